@@ -5,33 +5,72 @@ import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
+import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class AsrFlutterChannel implements MethodCallHandler {
     private static final String TAG = "AsrFlutterChannel";
     private static final String CHANNEL_NAME = "com.example.offline_anti_fraud_app/asr";
+    private static final String SCAM_PHRASES_PATH = "scam_phrases.txt";
+    
+    // 短语匹配基准测试的默认参数
+    private static final int BENCHMARK_DEFAULT_CHARS = 1_000_000;
+    private static final int BENCHMARK_DEFAULT_ROUNDS = 5;
+    private static final int BENCHMARK_DEFAULT_AUDIO_CHUNKS = 10000; // 约1000秒音频
+    private static final int BENCHMARK_DEFAULT_CHUNK_BYTES = 3200; // 100ms音频
+    private static final int BENCHMARK_DEFAULT_FRAME_MS = 100;
+    private static final int BENCHMARK_QUEUE_CAPACITY = 1; // 基准测试串行执行，最多再排队一个，其余以BUSY拒绝
+    private static final String BENCHMARK_DEFAULT_SAMPLE =
+            "喂你好，我是市公安局的，你的银行账户涉嫌洗钱，现在需要配合调查，请把资金转到安全账户。"
+            + "今天天气不错，我们下午去超市买点水果吧。"
+            + "您好，这边是快递客服，您的包裹丢失了，我们提供快递丢失理赔，请打开屏幕共享。"
+            + "兼职刷单，做任务点赞关注就有佣金，先垫付一下马上返利。";
     
     private final AsrService asrService;
     private final MethodChannel channel;
     private final Handler mainHandler; // 主线程Handler，用于确保MethodChannel调用在主线程执行
+    private final PhraseMatcher phraseMatcher; // 短语表加载失败时为null
+    private final RiskScoreFlutterChannel riskScoreChannel; // 识别完成的句子直接在原生侧打分并推送
+    private final InferenceExecutor benchmarkExecutor; // 基准测试和评估在单个后台线程上执行，互不干扰计时
     
     // 方法名常量
     private static final String METHOD_START = "start";
     private static final String METHOD_STOP = "stop";
+    private static final String METHOD_BENCHMARK_PHRASE_MATCHER = "benchmarkPhraseMatcher";
+    private static final String METHOD_GET_RISK_STREAM_STATS = "getRiskStreamStats";
+    private static final String METHOD_SET_AUDIO_SEND_POLICY = "setAudioSendPolicy";
+    private static final String METHOD_SET_LOCAL_VAD = "setLocalVad";
+    private static final String METHOD_EVALUATE_VOICE_GATE = "evaluateVoiceGate";
+    private static final String METHOD_BENCHMARK_AUDIO_CAPTURE = "benchmarkAudioCapture";
+    private static final String METHOD_BENCHMARK_AUDIO_ENCODING = "benchmarkAudioEncoding";
     
     // 事件名常量
     private static final String EVENT_ASR_RESULT = "asrResult";
     private static final String EVENT_STATUS_CHANGED = "statusChanged";
     private static final String EVENT_ERROR = "error";
     private static final String EVENT_API_KEY_ERROR = "apiKeyError"; // 添加API密钥错误事件
+    private static final String EVENT_SCAM_PHRASE_MATCHED = "scamPhraseMatched"; // 转写文本命中诈骗话术短语
     
-    public AsrFlutterChannel(FlutterEngine flutterEngine) {
+    public AsrFlutterChannel(FlutterEngine flutterEngine, Context context, FraudDetectionService fraudDetectionService) {
         this.asrService = new AsrService();
         this.channel = new MethodChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), CHANNEL_NAME);
         this.channel.setMethodCallHandler(this);
         this.mainHandler = new Handler(Looper.getMainLooper()); // 初始化主线程Handler
+        this.phraseMatcher = loadPhraseMatcher(context);
+        this.asrService.setPhraseMatcher(phraseMatcher);
+        this.riskScoreChannel = new RiskScoreFlutterChannel(flutterEngine, fraudDetectionService);
+        this.asrService.setSentenceListener(riskScoreChannel);
+        this.benchmarkExecutor = new InferenceExecutor("asr-benchmark", 1, BENCHMARK_QUEUE_CAPACITY, e -> "ASR_ERROR");
         
         // 设置ASR服务监听器
         this.asrService.setListener(new AsrService.AsrListener() {
@@ -73,9 +112,36 @@ public class AsrFlutterChannel implements MethodCallHandler {
                 });
                 Log.e(TAG, "ASR错误: " + error);
             }
+            
+            @Override
+            public void onPhraseMatches(String transcript, List<PhraseMatcher.Match> matches, boolean isFinal) {
+                List<Map<String, Object>> matchList = new ArrayList<>();
+                for (PhraseMatcher.Match match : matches) {
+                    matchList.add(match.toMap());
+                }
+                Map<String, Object> event = new HashMap<>();
+                event.put("transcript", transcript);
+                event.put("isFinal", isFinal);
+                event.put("matches", matchList);
+                // 确保在主线程调用MethodChannel
+                mainHandler.post(() -> channel.invokeMethod(EVENT_SCAM_PHRASE_MATCHED, event));
+                Log.d(TAG, "命中诈骗话术短语: " + matches.size() + "个");
+            }
         });
     }
     
+    /**
+     * 从assets加载诈骗话术短语表，失败时只记录日志，ASR照常工作
+     */
+    private static PhraseMatcher loadPhraseMatcher(Context context) {
+        try (InputStream inputStream = context.getAssets().open(SCAM_PHRASES_PATH)) {
+            return PhraseMatcher.load(inputStream);
+        } catch (IOException e) {
+            Log.e(TAG, "加载诈骗话术短语表失败: " + e.getMessage());
+            return null;
+        }
+    }
+    
     @Override
     public void onMethodCall(MethodCall call, Result result) {
         try {
@@ -89,6 +155,63 @@ public class AsrFlutterChannel implements MethodCallHandler {
                 asrService.stop();
                 result.success(true);
                 Log.d(TAG, "Received stop command");
+            } else if (METHOD_GET_RISK_STREAM_STATS.equals(call.method)) {
+                // 获取实时风险分数推送的合并、丢弃和端到端延迟统计
+                result.success(riskScoreChannel.getStats());
+            } else if (METHOD_SET_AUDIO_SEND_POLICY.equals(call.method)) {
+                // 网络积压时的音频发送策略：coalesce合并发送，dropOldest丢弃最旧的音频
+                String policy = call.argument("policy");
+                if ("coalesce".equals(policy)) {
+                    asrService.setSendPolicy(AudioSendQueue.Policy.COALESCE);
+                } else if ("dropOldest".equals(policy)) {
+                    asrService.setSendPolicy(AudioSendQueue.Policy.DROP_OLDEST);
+                } else {
+                    result.error("ASR_ERROR", "未知的发送策略: " + policy, null);
+                    return;
+                }
+                result.success(null);
+            } else if (METHOD_SET_LOCAL_VAD.equals(call.method)) {
+                // 本地语音活动检测开关，关闭后静音也会上传
+                Boolean enabled = call.argument("enabled");
+                asrService.setLocalVadEnabled(enabled == null || enabled);
+                result.success(asrService.isLocalVadEnabled());
+            } else if (METHOD_EVALUATE_VOICE_GATE.equals(call.method)) {
+                // 语音活动检测效果评估：默认使用合成测试音频，传入pcmPath时在该录音文件上运行
+                String pcmPath = call.argument("pcmPath");
+                Integer frameMs = call.argument("frameMs");
+                benchmarkExecutor.submit(null, () -> {
+                    try {
+                        return VoiceActivityGate.evaluate(
+                                pcmPath != null ? new File(pcmPath) : null,
+                                frameMs != null ? frameMs : BENCHMARK_DEFAULT_FRAME_MS);
+                    } catch (IOException e) {
+                        throw new IOException("读取PCM文件失败: " + e.getMessage(), e);
+                    }
+                }, result);
+            } else if (METHOD_BENCHMARK_AUDIO_CAPTURE.equals(call.method)) {
+                // 音频采集路径基准测试，使用合成音频，不占用麦克风
+                Integer chunks = call.argument("chunks");
+                benchmarkExecutor.submit(null, () -> AudioRecorder.benchmarkCapture(
+                        chunks != null ? chunks : BENCHMARK_DEFAULT_AUDIO_CHUNKS), result);
+            } else if (METHOD_BENCHMARK_AUDIO_ENCODING.equals(call.method)) {
+                // 音频事件编码基准测试：原Base64+JSONObject路径与流式编码的CPU时间和上行字节数对比
+                Integer chunks = call.argument("chunks");
+                Integer chunkBytes = call.argument("chunkBytes");
+                benchmarkExecutor.submit(null, () -> AudioEventEncoder.benchmark(
+                        chunkBytes != null ? chunkBytes : BENCHMARK_DEFAULT_CHUNK_BYTES,
+                        chunks != null ? chunks : BENCHMARK_DEFAULT_AUDIO_CHUNKS), result);
+            } else if (METHOD_BENCHMARK_PHRASE_MATCHER.equals(call.method)) {
+                // 短语匹配吞吐量基准测试，在后台线程执行，未传text时使用内置样本
+                if (phraseMatcher == null) {
+                    result.error("ASR_ERROR", "诈骗话术短语表未加载", null);
+                    return;
+                }
+                String sample = call.hasArgument("text") ? call.argument("text") : BENCHMARK_DEFAULT_SAMPLE;
+                Integer chars = call.argument("chars");
+                Integer rounds = call.argument("rounds");
+                benchmarkExecutor.submit(null, () -> phraseMatcher.benchmark(sample,
+                        chars != null ? chars : BENCHMARK_DEFAULT_CHARS,
+                        rounds != null ? rounds : BENCHMARK_DEFAULT_ROUNDS), result);
             } else {
                 result.notImplemented();
                 Log.w(TAG, "Received unknown method: " + call.method);
@@ -100,8 +223,12 @@ public class AsrFlutterChannel implements MethodCallHandler {
     }
     
     public void dispose() {
-        // 停止ASR服务
-        asrService.stop();
+        // 停止ASR服务并结束发送线程
+        asrService.dispose();
+        // 停止风险分数推送
+        riskScoreChannel.dispose();
+        // 中断正在执行的基准测试，排队的以CANCELLED回复
+        benchmarkExecutor.shutdown();
         // 移除方法调用处理器
         channel.setMethodCallHandler(null);
         Log.d(TAG, "Disposed AsrFlutterChannel");
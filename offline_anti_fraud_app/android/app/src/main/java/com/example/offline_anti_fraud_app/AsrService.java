@@ -5,7 +5,10 @@ import android.util.Log;
 import io.flutter.embedding.engine.FlutterEngineCache;
 import io.flutter.plugin.common.MethodChannel;
 
+import org.java_websocket.WebSocket;
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.TextFrame;
 import org.java_websocket.handshake.ServerHandshake;
 import org.json.JSONObject;
 
@@ -14,18 +17,30 @@ import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.util.Base64;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 public class AsrService {
     private static final String TAG = "AsrService";
+    
+    // 热路径指标
+    private static final Metrics.Histogram CHUNK_SEND_TIME = Metrics.histogram("asr.chunkSendTime"); // 音频采集到WebSocket发送完成，包含排队时间
+    private static final Metrics.Counter CHUNKS_SENT = Metrics.counter("asr.chunksSent");
+    private static final Metrics.Counter FRAMES_SENT = Metrics.counter("asr.framesSent"); // 合并发送时一帧包含多块音频
+    private static final Metrics.Counter CHUNKS_SKIPPED = Metrics.counter("asr.chunksSkipped"); // 未连接时丢弃的音频块
+    private static final Metrics.Counter BYTES_SENT = Metrics.counter("asr.bytesSent"); // PCM字节数
+    private static final Metrics.Counter WIRE_BYTES_SENT = Metrics.counter("asr.wireBytesSent"); // 编码后的事件字节数
+    private static final Metrics.Histogram PING_RTT = Metrics.histogram("asr.pingRtt");
+    private static final Metrics.Counter RECONNECTS = Metrics.counter("asr.reconnects");
+    private static final Metrics.Counter TRANSCRIPTS = Metrics.counter("asr.completedTranscripts");
     // API密钥池
     private static final String[] API_KEYS = {
         // 补充密钥
@@ -48,38 +63,131 @@ public class AsrService {
     private AsrListener listener;
     private int reconnectAttempts = 0;
     private long reconnectDelay = INITIAL_RECONNECT_DELAY;
-    private final ExecutorService sendExecutor = Executors.newSingleThreadExecutor(); // 单独的线程用于发送音频数据，避免阻塞录音线程
+    // 录音线程把音频块放入有界队列，由单独的发送线程取出发送，网络阻塞时积压不超过队列容量
+    private static final int SEND_QUEUE_CAPACITY = 8; // 800ms音频
+    private static final int MAX_FRAME_BYTES = 16000; // 合并发送时一帧最多500ms音频
+    private static final int MAX_FRAME_CHUNKS = 16;
+    private static final long SEND_IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long SOCKET_DRAIN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    // 定时ping测量往返时延，作为自适应分帧的拥塞信号
+    private static final long PING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long PING_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private final AudioSendQueue sendQueue = new AudioSendQueue(SEND_QUEUE_CAPACITY, AudioSendQueue.Policy.COALESCE);
+    private static final long SENDER_JOIN_TIMEOUT_MS = 1000;
+    private final Thread senderThread; // 未录音时一直挂起，start时唤醒，dispose时结束
+    private volatile boolean disposed = false;
+    // 以下对象只在发送线程使用：音频块拷贝进复用的数组，事件直接编码进复用的缓冲区，以复用的文本帧发出
+    private final AudioChunk[] frameChunks = new AudioChunk[MAX_FRAME_CHUNKS];
+    private byte[] framePcm = new byte[MAX_FRAME_BYTES];
+    private final AudioEventEncoder audioEventEncoder = new AudioEventEncoder();
+    private final TextFrame audioFrame = new TextFrame();
+    private final FramingController framingController = new FramingController();
+    private volatile long pingSentNanos = 0; // 未收到pong的ping的发送时间，没有时为0
+    
+    // 诈骗话术短语匹配，为null时不匹配
+    private volatile PhraseMatcher phraseMatcher;
+    private String matchedItemId; // 当前转写条目ID，同一条目的partial结果逐步变长，已上报的短语不再重复上报
+    private final Set<String> reportedPhrases = new HashSet<>();
+    
+    // 识别完成的句子直接交给风险打分，为null时不转发
+    private volatile SentenceListener sentenceListener;
+    // 音频时间线：服务端事件中的audio_end_ms是本次连接已发送音频的累计时长，换算成本地时间用于计算端到端延迟。
+    // 本地静音门控会跳过静音，累计时长不再等于经过的时间，所以按块记录“发送后的累计字节数 -> 该块采集时间”，由timelineLock保护
+    private static final int AUDIO_BYTES_PER_MS = FramingController.BYTES_PER_MS;
+    private static final int TIMELINE_SIZE = 256; // 40ms帧时可回溯约10秒
+    private final Object timelineLock = new Object();
+    private final long[] timelineEndBytes = new long[TIMELINE_SIZE];
+    private final long[] timelineCaptureNanos = new long[TIMELINE_SIZE];
+    private long timelineCount = 0;
+    private long sentAudioBytes = 0;
+    private volatile long speechEndNanos = 0;
+    
+    // 本地语音活动检测，位于录音线程与发送队列之间
+    private final VoiceActivityGate voiceActivityGate = new VoiceActivityGate(this::sendAudioData);
     
     public interface AsrListener {
         void onAsrResult(String result);
         void onStatusChanged(String status);
         void onError(String error);
+        void onPhraseMatches(String transcript, List<PhraseMatcher.Match> matches, boolean isFinal);
+    }
+    
+    /**
+     * 识别完成的句子回调，在WebSocket线程调用，实现方不应阻塞
+     */
+    public interface SentenceListener {
+        /**
+         * @param audioEndNanos 该句语音结束的本地时间（System.nanoTime），无法确定时为识别结果到达时间
+         */
+        void onSentenceCompleted(String transcript, long audioEndNanos);
     }
     
     public AsrService() {
-        audioRecorder = new AudioRecorder(new AudioRecorder.AudioListener() {
-            @Override
-            public void onAudioData(byte[] data) {
-                sendAudioData(data);
-            }
-        });
+        audioRecorder = new AudioRecorder(voiceActivityGate);
+        audioRecorder.setFramingController(framingController);
+        senderThread = new Thread(this::sendLoop, "AsrAudioSender");
+        senderThread.setDaemon(true);
+        senderThread.start();
     }
     
     public void setListener(AsrListener listener) {
         this.listener = listener;
     }
     
+    public void setPhraseMatcher(PhraseMatcher phraseMatcher) {
+        this.phraseMatcher = phraseMatcher;
+    }
+    
+    public void setSentenceListener(SentenceListener sentenceListener) {
+        this.sentenceListener = sentenceListener;
+    }
+    
+    /**
+     * 设置网络积压时的音频发送策略，默认合并发送
+     */
+    public void setSendPolicy(AudioSendQueue.Policy policy) {
+        sendQueue.setPolicy(policy);
+        Log.d(TAG, "音频发送策略: " + policy);
+    }
+    
+    public AudioSendQueue.Policy getSendPolicy() {
+        return sendQueue.getPolicy();
+    }
+    
+    /**
+     * 开启或关闭本地语音活动检测，关闭后静音也会上传，完全依赖服务端VAD
+     */
+    public void setLocalVadEnabled(boolean enabled) {
+        voiceActivityGate.setEnabled(enabled);
+        if (!enabled) {
+            // 预录缓冲区中只有静音，直接释放
+            voiceActivityGate.reset();
+        }
+    }
+    
+    public boolean isLocalVadEnabled() {
+        return voiceActivityGate.isEnabled();
+    }
+    
     public void start() {
         if (isRunning.get()) {
             Log.d(TAG, "ASR service is already running");
             return;
         }
         
+        if (disposed) {
+            Log.w(TAG, "ASR service has been disposed");
+            return;
+        }
+        
         try {
             isRunning.set(true);
+            LockSupport.unpark(senderThread);
             // 每次启动服务时，从头检查API密钥
             resetReconnectState();
             connectWebSocket();
+            // 上次停止时录音线程可能还送入了最后一帧，开始录音前一并释放
+            voiceActivityGate.reset();
             audioRecorder.startRecording();
             notifyStatusChanged("ASR服务已启动");
         } catch (Exception e) {
@@ -101,6 +209,10 @@ public class AsrService {
             if (audioRecorder != null) {
                 audioRecorder.stopRecording();
             }
+            // 释放门控预录缓冲区中的音频块
+            voiceActivityGate.reset();
+            // 唤醒发送线程释放积压的音频后挂起
+            LockSupport.unpark(senderThread);
             
             if (webSocketClient != null && webSocketClient.isOpen()) {
                 webSocketClient.close(1000, "ASR service stopped");
@@ -113,6 +225,21 @@ public class AsrService {
         }
     }
     
+    /**
+     * 停止服务并结束发送线程，之后不能再启动
+     */
+    public void dispose() {
+        disposed = true;
+        stop();
+        senderThread.interrupt();
+        try {
+            senderThread.join(SENDER_JOIN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Log.d(TAG, "ASR service disposed");
+    }
+    
     // 获取当前API密钥
     private String getCurrentApiKey() {
         return API_KEYS[currentApiKeyIndex];
@@ -175,6 +302,11 @@ public class AsrService {
             @Override
             public void onOpen(ServerHandshake handshake) {
                 Log.d(TAG, "WebSocket connected");
+                // 新连接的音频时间线从下一段发送的音频开始
+                resetTimeline();
+                speechEndNanos = 0;
+                pingSentNanos = 0;
+                framingController.resetNetworkState();
                 // 重置重连状态
                 resetReconnectState();
                 sendSessionUpdate();
@@ -186,6 +318,18 @@ public class AsrService {
                 handleAsrResponse(message);
             }
             
+            @Override
+            public void onWebsocketPong(WebSocket conn, Framedata f) {
+                super.onWebsocketPong(conn, f);
+                long sent = pingSentNanos;
+                if (sent != 0) {
+                    pingSentNanos = 0;
+                    long rtt = System.nanoTime() - sent;
+                    PING_RTT.recordNanos(rtt);
+                    framingController.onRtt(rtt);
+                }
+            }
+            
             @Override
             public void onClose(int code, String reason, boolean remote) {
                 Log.d(TAG, "WebSocket closed: " + code + " - " + reason);
@@ -249,26 +393,139 @@ public class AsrService {
         }
     }
     
-    private void sendAudioData(byte[] data) {
+    /**
+     * 录音线程回调（经过语音活动检测）：把音频块放入发送队列，未连接时直接释放
+     */
+    private void sendAudioData(AudioChunk chunk) {
         if (!isRunning.get() || webSocketClient == null || !webSocketClient.isOpen()) {
+            CHUNKS_SKIPPED.increment();
+            chunk.release();
             return;
         }
         
-        // 将音频数据发送操作提交到单独的线程执行，避免阻塞录音线程
-        sendExecutor.submit(() -> {
+        sendQueue.offer(chunk);
+        if (!isRunning.get()) {
+            // 放入队列时服务恰好停止，发送线程可能已经挂起，唤醒它释放这块音频
+            LockSupport.unpark(senderThread);
+        }
+    }
+    
+    /**
+     * 发送线程主循环：按队列策略取出一块或合并多块音频，编码为一个事件发出，无论是否发送成功都会释放音频块；
+     * 服务未运行时释放积压的音频后挂起，直到start或dispose唤醒
+     */
+    private void sendLoop() {
+        long lastPingNanos = 0;
+        while (!disposed && !Thread.currentThread().isInterrupted()) {
+            if (!isRunning.get()) {
+                releaseQueued();
+                LockSupport.park(this);
+                continue;
+            }
+            
+            WebSocketClient client = webSocketClient;
+            if (isRunning.get() && client != null && client.isOpen()) {
+                long now = System.nanoTime();
+                if (now - lastPingNanos >= PING_INTERVAL_NANOS) {
+                    lastPingNanos = now;
+                    ping(client, now);
+                }
+                // WebSocket库的发送队列没有上限，上一帧还没写入socket时先不交新帧，让积压留在有界队列里合并或丢弃
+                waitForSocketDrain(client);
+            }
+            
+            int count = sendQueue.drainTo(frameChunks, MAX_FRAME_BYTES, SEND_IDLE_WAIT_NANOS);
+            if (count == 0) {
+                continue;
+            }
+            framingController.onQueueDepth(count - 1 + sendQueue.size());
             try {
-                String encoded = Base64.getEncoder().encodeToString(data);
-                JSONObject audioEvent = new JSONObject()
-                        .put("event_id", "event_" + System.currentTimeMillis())
-                        .put("type", "input_audio_buffer.append")
-                        .put("audio", encoded);
-                
-                webSocketClient.send(audioEvent.toString());
+                client = webSocketClient;
+                if (!isRunning.get() || client == null || !client.isOpen()) {
+                    CHUNKS_SKIPPED.add(count);
+                    continue;
+                }
+                sendFrame(client, count);
             } catch (Exception e) {
                 Log.e(TAG, "发送音频数据失败: " + e.getMessage());
                 notifyError("发送音频数据失败: " + e.getMessage());
+            } finally {
+                for (int i = 0; i < count; i++) {
+                    frameChunks[i].release();
+                    frameChunks[i] = null;
+                }
             }
-        });
+        }
+        releaseQueued();
+        Log.d(TAG, "音频发送线程退出");
+    }
+    
+    private void releaseQueued() {
+        AudioChunk chunk;
+        int released = 0;
+        while ((chunk = sendQueue.poll()) != null) {
+            chunk.release();
+            released++;
+        }
+        if (released > 0) {
+            CHUNKS_SKIPPED.add(released);
+        }
+    }
+    
+    private void waitForSocketDrain(WebSocketClient client) {
+        while (client.hasBufferedData() && client.isOpen() && isRunning.get()) {
+            LockSupport.parkNanos(SOCKET_DRAIN_WAIT_NANOS);
+        }
+    }
+    
+    /**
+     * 发送ping；上一个ping超过间隔仍未收到pong时，把已等待的时长作为往返时延的下限报告给分帧控制器
+     */
+    private void ping(WebSocketClient client, long now) {
+        long sent = pingSentNanos;
+        if (sent != 0 && now - sent < PING_TIMEOUT_NANOS) {
+            framingController.onRtt(now - sent);
+            return;
+        }
+        try {
+            pingSentNanos = now;
+            client.sendPing();
+        } catch (Exception e) {
+            pingSentNanos = 0;
+            Log.w(TAG, "发送ping失败: " + e.getMessage());
+        }
+    }
+    
+    private void sendFrame(WebSocketClient client, int count) {
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            length += frameChunks[i].length();
+        }
+        if (framePcm.length < length) {
+            // 合并时出队的块可能与预判的不同，极少数情况下略超过MAX_FRAME_BYTES
+            framePcm = new byte[length];
+        }
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            frameChunks[i].copyTo(framePcm, offset);
+            offset += frameChunks[i].length();
+        }
+        
+        ByteBuffer payload = audioEventEncoder.encode(framePcm, length, System.currentTimeMillis());
+        int payloadBytes = payload.remaining();
+        // sendFrame返回前WebSocket库已把负载拷贝进自己的发送帧，缓冲区可以立即复用
+        audioFrame.setPayload(payload);
+        audioFrame.setFin(true);
+        client.sendFrame(audioFrame);
+        
+        for (int i = 0; i < count; i++) {
+            CHUNK_SEND_TIME.recordSince(frameChunks[i].captureNanos());
+        }
+        recordTimeline(count);
+        CHUNKS_SENT.add(count);
+        FRAMES_SENT.increment();
+        BYTES_SENT.add(length);
+        WIRE_BYTES_SENT.add(payloadBytes);
     }
     
     private void handleAsrResponse(String message) {
@@ -279,9 +536,22 @@ public class AsrService {
             if ("conversation.item.input_audio_transcription.completed".equals(eventType)) {
                 String transcript = data.optString("transcript");
                 notifyAsrResult(transcript);
+                matchPhrases(data.optString("item_id"), transcript, true);
+                notifySentenceCompleted(transcript);
+                TRANSCRIPTS.increment();
+            } else if ("input_audio_buffer.speech_started".equals(eventType)) {
+                framingController.onSpeechStarted();
+            } else if ("input_audio_buffer.speech_stopped".equals(eventType)) {
+                // 服务端VAD判定一句话结束，记录语音结束的本地时间
+                framingController.onSpeechStopped();
+                long audioEndMs = data.optLong("audio_end_ms", -1);
+                if (audioEndMs >= 0) {
+                    speechEndNanos = captureNanosAt(audioEndMs);
+                }
             } else if ("conversation.item.input_audio_transcription.partial".equals(eventType)) {
                 String transcript = data.optString("transcript");
                 notifyAsrResult(transcript);
+                matchPhrases(data.optString("item_id"), transcript, false);
             }
         } catch (Exception e) {
             Log.e(TAG, "解析ASR结果失败: " + e.getMessage());
@@ -289,6 +559,83 @@ public class AsrService {
         }
     }
     
+    /**
+     * 在转写文本上匹配诈骗话术短语，只上报当前条目中新出现的短语
+     */
+    private void matchPhrases(String itemId, String transcript, boolean isFinal) {
+        PhraseMatcher matcher = phraseMatcher;
+        if (matcher == null || transcript.isEmpty()) {
+            return;
+        }
+        if (!itemId.equals(matchedItemId)) {
+            matchedItemId = itemId;
+            reportedPhrases.clear();
+        }
+        
+        List<PhraseMatcher.Match> newMatches = new ArrayList<>();
+        for (PhraseMatcher.Match match : matcher.findAll(transcript)) {
+            if (reportedPhrases.add(match.phrase)) {
+                newMatches.add(match);
+            }
+        }
+        if (isFinal) {
+            matchedItemId = null;
+            reportedPhrases.clear();
+        }
+        if (!newMatches.isEmpty() && listener != null) {
+            listener.onPhraseMatches(transcript, newMatches, isFinal);
+        }
+    }
+    
+    private void recordTimeline(int count) {
+        synchronized (timelineLock) {
+            for (int i = 0; i < count; i++) {
+                sentAudioBytes += frameChunks[i].length();
+                int index = (int) (timelineCount++ % TIMELINE_SIZE);
+                timelineEndBytes[index] = sentAudioBytes;
+                timelineCaptureNanos[index] = frameChunks[i].captureNanos();
+            }
+        }
+    }
+    
+    private void resetTimeline() {
+        synchronized (timelineLock) {
+            timelineCount = 0;
+            sentAudioBytes = 0;
+        }
+    }
+    
+    /**
+     * 已发送音频中第audioMs毫秒处的本地采集时间，超出记录范围时返回0
+     */
+    private long captureNanosAt(long audioMs) {
+        long targetBytes = audioMs * AUDIO_BYTES_PER_MS;
+        synchronized (timelineLock) {
+            long oldest = Math.max(0, timelineCount - TIMELINE_SIZE);
+            // 累计字节数从新到旧递减，找到末尾不早于该位置的最早一块；块的采集时间对应其末尾
+            long found = -1;
+            for (long n = timelineCount - 1; n >= oldest && timelineEndBytes[(int) (n % TIMELINE_SIZE)] >= targetBytes; n--) {
+                found = n;
+            }
+            // 找到的是记录中最早的一块且更早的块已被覆盖时，无法确认该位置在这一块内
+            if (found >= 0 && (found > oldest || oldest == 0)) {
+                int index = (int) (found % TIMELINE_SIZE);
+                return timelineCaptureNanos[index]
+                        - TimeUnit.MILLISECONDS.toNanos((timelineEndBytes[index] - targetBytes) / AUDIO_BYTES_PER_MS);
+            }
+        }
+        return 0;
+    }
+    
+    private void notifySentenceCompleted(String transcript) {
+        long audioEnd = speechEndNanos != 0 ? speechEndNanos : System.nanoTime();
+        speechEndNanos = 0;
+        SentenceListener target = sentenceListener;
+        if (target != null) {
+            target.onSentenceCompleted(transcript, audioEnd);
+        }
+    }
+    
     private void notifyAsrResult(String result) {
         if (listener != null) {
             listener.onAsrResult(result);
@@ -366,6 +713,7 @@ public class AsrService {
     private void reconnect() {
         try {
             Log.d(TAG, "Reconnecting...");
+            RECONNECTS.increment();
             
             // 关闭旧连接
             if (webSocketClient != null) {
@@ -0,0 +1,101 @@
+package com.example.offline_anti_fraud_app;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 可复用的音频块
+ * 数据存放在直接内存ByteBuffer中，由AudioRecord直接写入；音频块来自AudioChunkPool，采用引用计数：
+ * 取得时计数为1，需要在其他地方继续持有时调用retain()，每个持有方用完后各调用一次release()，计数归零时回到缓冲池。
+ * 释放后不能再访问其数据
+ */
+public final class AudioChunk {
+    private final AudioChunkPool pool;
+    private final ByteBuffer buffer;
+    private final ByteBuffer copyView; // 整块拷贝用的独立视图，不影响buffer的position
+    private final AtomicInteger refCount = new AtomicInteger();
+    private int length;
+    private long captureNanos;
+    
+    AudioChunk(AudioChunkPool pool, int capacity) {
+        this.pool = pool;
+        this.buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        this.copyView = buffer.duplicate();
+    }
+    
+    /**
+     * 从缓冲池取出时调用
+     */
+    void reset() {
+        refCount.set(1);
+        length = 0;
+        captureNanos = 0;
+        buffer.clear();
+    }
+    
+    /**
+     * 录音线程写入数据后调用，limit设为有效长度
+     */
+    void setFilled(int length, long captureNanos) {
+        this.length = length;
+        this.captureNanos = captureNanos;
+        buffer.position(0).limit(length);
+    }
+    
+    /**
+     * 音频数据，position为0、limit为有效长度（16位小端PCM）；
+     * 多个持有方共享同一个缓冲区，只能使用按下标读取的方法，不得修改position和limit
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+    
+    public int length() {
+        return length;
+    }
+    
+    public int capacity() {
+        return buffer.capacity();
+    }
+    
+    /**
+     * 这段音频最后一个采样读出的时间（System.nanoTime）
+     */
+    public long captureNanos() {
+        return captureNanos;
+    }
+    
+    /**
+     * 第index个16位采样
+     */
+    public short sample(int index) {
+        return buffer.getShort(index * 2);
+    }
+    
+    /**
+     * 把有效数据整块拷贝到dst的offset处，比逐个按下标读取快得多
+     */
+    public void copyTo(byte[] dst, int offset) {
+        synchronized (copyView) {
+            copyView.clear();
+            copyView.get(dst, offset, length);
+        }
+    }
+    
+    public AudioChunk retain() {
+        if (refCount.getAndIncrement() <= 0) {
+            throw new IllegalStateException("音频块已释放");
+        }
+        return this;
+    }
+    
+    public void release() {
+        int remaining = refCount.decrementAndGet();
+        if (remaining == 0) {
+            pool.recycle(this);
+        } else if (remaining < 0) {
+            throw new IllegalStateException("音频块被重复释放");
+        }
+    }
+}
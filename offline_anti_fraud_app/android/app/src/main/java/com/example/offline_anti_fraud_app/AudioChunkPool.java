@@ -0,0 +1,73 @@
+package com.example.offline_anti_fraud_app;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 音频块缓冲池
+ * 预先分配固定数量的直接内存音频块，录音线程循环取用、发送线程用完归还，稳定运行时不产生垃圾；
+ * 池空（下游积压）时临时分配新块，归还时超出上限的块交给GC回收
+ */
+public class AudioChunkPool {
+    private static final Metrics.Counter POOL_ALLOCATIONS = Metrics.counter("audio.chunkPoolAllocations");
+    
+    private final int chunkCapacity;
+    private final ArrayBlockingQueue<AudioChunk> free;
+    private final AtomicLong allocations = new AtomicLong();
+    
+    /**
+     * @param chunkCapacity 每块字节数
+     * @param initialChunks 预分配的块数
+     * @param maxPooled 池中最多保留的空闲块数
+     */
+    public AudioChunkPool(int chunkCapacity, int initialChunks, int maxPooled) {
+        this.chunkCapacity = chunkCapacity;
+        this.free = new ArrayBlockingQueue<>(Math.max(maxPooled, initialChunks));
+        for (int i = 0; i < initialChunks; i++) {
+            free.offer(allocate());
+        }
+    }
+    
+    /**
+     * 取出一个空白音频块，引用计数为1
+     */
+    public AudioChunk acquire() {
+        AudioChunk chunk = free.poll();
+        if (chunk == null) {
+            chunk = allocate();
+        }
+        chunk.reset();
+        return chunk;
+    }
+    
+    void recycle(AudioChunk chunk) {
+        free.offer(chunk);
+    }
+    
+    public int chunkCapacity() {
+        return chunkCapacity;
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("chunkCapacity", chunkCapacity);
+        stats.put("freeChunks", free.size());
+        stats.put("allocations", allocations.get());
+        return stats;
+    }
+    
+    /**
+     * 累计分配的音频块数，包括预分配的块
+     */
+    public long allocations() {
+        return allocations.get();
+    }
+    
+    private AudioChunk allocate() {
+        allocations.incrementAndGet();
+        POOL_ALLOCATIONS.increment();
+        return new AudioChunk(this, chunkCapacity);
+    }
+}
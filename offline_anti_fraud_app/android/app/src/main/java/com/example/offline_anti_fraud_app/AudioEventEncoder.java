@@ -0,0 +1,171 @@
+package com.example.offline_anti_fraud_app;
+
+import android.os.Debug;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * input_audio_buffer.append事件的流式编码器
+ * 直接把事件JSON写入一个复用的字节缓冲区，PCM数据边读边做Base64编码写在audio字段里，
+ * 不再为每块音频创建Base64字符串、JSONObject和序列化后的字符串。协议只接受JSON文本帧，Base64无法省掉；
+ * 非线程安全，每个发送线程使用自己的实例，返回的缓冲区在下一次encode前有效
+ */
+public class AudioEventEncoder {
+    private static final String TAG = "AudioEventEncoder";
+    
+    private static final byte[] EVENT_ID_PREFIX = "{\"event_id\":\"event_".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] AUDIO_FIELD_PREFIX = "\",\"type\":\"input_audio_buffer.append\",\"audio\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EVENT_SUFFIX = "\"}".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BASE64_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_LONG_DIGITS = 20;
+    
+    private byte[] out = new byte[0];
+    private ByteBuffer outBuffer = ByteBuffer.wrap(out);
+    
+    /**
+     * 编码一个事件
+     * @param pcm 音频数据，从下标0开始读取length个字节（直接缓冲区逐字节读取有边界检查开销，调用方先整块拷贝到数组）
+     * @param eventTimeMillis 事件ID中的时间戳，与原先的"event_" + System.currentTimeMillis()一致
+     * @return 事件的UTF-8字节，position为0、limit为事件长度
+     */
+    public ByteBuffer encode(byte[] pcm, int length, long eventTimeMillis) {
+        int size = EVENT_ID_PREFIX.length + MAX_LONG_DIGITS + AUDIO_FIELD_PREFIX.length
+                + base64Length(length) + EVENT_SUFFIX.length;
+        if (out.length < size) {
+            out = new byte[size];
+            outBuffer = ByteBuffer.wrap(out);
+        }
+        
+        int pos = put(EVENT_ID_PREFIX, 0);
+        pos = putDecimal(eventTimeMillis, pos);
+        pos = put(AUDIO_FIELD_PREFIX, pos);
+        pos = putBase64(pcm, length, pos);
+        pos = put(EVENT_SUFFIX, pos);
+        
+        outBuffer.clear();
+        outBuffer.limit(pos);
+        return outBuffer;
+    }
+    
+    static int base64Length(int length) {
+        return (length + 2) / 3 * 4;
+    }
+    
+    private int put(byte[] bytes, int pos) {
+        System.arraycopy(bytes, 0, out, pos, bytes.length);
+        return pos + bytes.length;
+    }
+    
+    private int putDecimal(long value, int pos) {
+        if (value < 0) {
+            out[pos++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            out[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+    
+    private int putBase64(byte[] pcm, int length, int pos) {
+        int i = 0;
+        for (; i + 3 <= length; i += 3) {
+            int bits = (pcm[i] & 0xFF) << 16 | (pcm[i + 1] & 0xFF) << 8 | (pcm[i + 2] & 0xFF);
+            out[pos++] = BASE64_ALPHABET[bits >>> 18];
+            out[pos++] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+            out[pos++] = BASE64_ALPHABET[(bits >>> 6) & 0x3F];
+            out[pos++] = BASE64_ALPHABET[bits & 0x3F];
+        }
+        int remaining = length - i;
+        if (remaining > 0) {
+            int bits = (pcm[i] & 0xFF) << 16 | (remaining == 2 ? (pcm[i + 1] & 0xFF) << 8 : 0);
+            out[pos++] = BASE64_ALPHABET[bits >>> 18];
+            out[pos++] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+            out[pos++] = remaining == 2 ? BASE64_ALPHABET[(bits >>> 6) & 0x3F] : (byte) '=';
+            out[pos++] = '=';
+        }
+        return pos;
+    }
+    
+    /**
+     * 对比原先的编码路径（拷贝为byte[]、Base64字符串、JSONObject、序列化后按UTF-8编码）与流式编码的
+     * 线程CPU时间和每秒音频产生的上行字节数
+     */
+    public static Map<String, Object> benchmark(int chunkBytes, int chunks) {
+        ByteBuffer pcm = ByteBuffer.allocateDirect(chunkBytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < chunkBytes / 2; i++) {
+            pcm.putShort(i * 2, (short) (Math.sin(i * 0.17) * 8000));
+        }
+        AudioEventEncoder encoder = new AudioEventEncoder();
+        
+        // 各预热一轮
+        long legacyBytes = runLegacy(pcm, chunkBytes, Math.min(chunks, 500));
+        long streamingBytes = runStreaming(encoder, pcm, chunkBytes, Math.min(chunks, 500));
+        
+        long startCpu = Debug.threadCpuTimeNanos();
+        legacyBytes = runLegacy(pcm, chunkBytes, chunks);
+        long legacyCpu = Debug.threadCpuTimeNanos() - startCpu;
+        
+        startCpu = Debug.threadCpuTimeNanos();
+        streamingBytes = runStreaming(encoder, pcm, chunkBytes, chunks);
+        long streamingCpu = Debug.threadCpuTimeNanos() - startCpu;
+        
+        double audioSeconds = (double) chunks * chunkBytes / (16000 * 2);
+        Map<String, Object> report = new HashMap<>();
+        report.put("chunks", chunks);
+        report.put("chunkBytes", chunkBytes);
+        report.put("legacyCpuUsPerChunk", legacyCpu / 1e3 / chunks);
+        report.put("streamingCpuUsPerChunk", streamingCpu / 1e3 / chunks);
+        report.put("cpuSpeedup", streamingCpu > 0 ? (double) legacyCpu / streamingCpu : 0.0);
+        report.put("pcmBytesPerSec", chunkBytes * chunks / audioSeconds);
+        report.put("legacyWireBytesPerSec", legacyBytes / audioSeconds);
+        report.put("streamingWireBytesPerSec", streamingBytes / audioSeconds);
+        Log.d(TAG, "音频事件编码基准测试: " + report);
+        return report;
+    }
+    
+    private static long runLegacy(ByteBuffer pcm, int chunkBytes, int chunks) {
+        long totalBytes = 0;
+        try {
+            for (int c = 0; c < chunks; c++) {
+                byte[] data = new byte[chunkBytes];
+                pcm.duplicate().get(data);
+                String encoded = Base64.getEncoder().encodeToString(data);
+                JSONObject audioEvent = new JSONObject()
+                        .put("event_id", "event_" + System.currentTimeMillis())
+                        .put("type", "input_audio_buffer.append")
+                        .put("audio", encoded);
+                // WebSocket库发送文本帧时再按UTF-8编码一次
+                totalBytes += audioEvent.toString().getBytes(StandardCharsets.UTF_8).length;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "原编码路径基准测试失败: " + e.getMessage());
+        }
+        return totalBytes;
+    }
+    
+    private static long runStreaming(AudioEventEncoder encoder, ByteBuffer pcm, int chunkBytes, int chunks) {
+        long totalBytes = 0;
+        byte[] frame = new byte[chunkBytes]; // 发送线程复用的拷贝缓冲区
+        for (int c = 0; c < chunks; c++) {
+            pcm.clear();
+            pcm.get(frame, 0, chunkBytes);
+            totalBytes += encoder.encode(frame, chunkBytes, System.currentTimeMillis()).remaining();
+        }
+        return totalBytes;
+    }
+}
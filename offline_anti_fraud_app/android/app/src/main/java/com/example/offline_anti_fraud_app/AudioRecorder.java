@@ -5,9 +5,14 @@ import android.media.AudioRecord;
 import android.media.MediaRecorder;
 import android.util.Log;
 
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
 
 public class AudioRecorder {
     private static final String TAG = "AudioRecorder";
@@ -17,25 +22,45 @@ public class AudioRecorder {
     private static final int CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_MONO; // 单声道
     private static final int AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT; // 16位PCM
     private static final int BUFFER_SIZE = AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT) * 8; 
-    private static final int CHUNK_SIZE = 3200; // 每块3200字节 = 100ms音频，实时识别最佳实践
-    private static final int MIN_CHUNK_SIZE = 800; // 降低最小发送块大小 = 25ms音频，加快数据发送
-    private static final long MAX_BUFFER_TIME = 300; // 降低最大等待时间，加快数据发送
-    private static final double BUFFER_THRESHOLD = 0.7; // 降低缓冲区阈值，更早发送数据
+    private static final int CHUNK_SIZE = FramingController.DEFAULT_FRAME_MS * FramingController.BYTES_PER_MS; // 默认每帧100ms音频，实时识别最佳实践
+    private static final int CHUNK_CAPACITY = FramingController.MAX_FRAME_MS * FramingController.BYTES_PER_MS; // 音频块按最长帧分配
+    private static final int POOL_CHUNKS = 16; // 预分配的音频块数
+    
+    private static final Metrics.Counter CHUNKS_CAPTURED = Metrics.counter("audio.chunksCaptured");
     
     private final AudioListener listener;
     private final AtomicBoolean isRecording = new AtomicBoolean(false);
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final AudioChunkPool chunkPool = new AudioChunkPool(CHUNK_CAPACITY, POOL_CHUNKS, POOL_CHUNKS * 2);
     
     private AudioRecord audioRecord;
+    private volatile FramingController framingController; // 为null时固定每帧CHUNK_SIZE字节
     
     public interface AudioListener {
-        void onAudioData(byte[] data);
+        /**
+         * 音频块的所有权转交给监听方，用完后必须调用chunk.release()归还缓冲池，可以交给其他线程后再释放
+         */
+        void onAudioData(AudioChunk chunk);
+    }
+    
+    /**
+     * PCM数据来源，把最多sizeInBytes字节写入buffer开头，返回写入的字节数，小于0表示出错
+     */
+    interface PcmSource {
+        int read(ByteBuffer buffer, int sizeInBytes);
     }
     
     public AudioRecorder(AudioListener listener) {
         this.listener = listener;
     }
     
+    /**
+     * 由控制器按网络状况和说话状态决定每帧长度，下次开始录音时生效
+     */
+    public void setFramingController(FramingController framingController) {
+        this.framingController = framingController;
+    }
+    
     public void startRecording() {
         if (isRecording.get()) {
             Log.d(TAG, "Already recording");
@@ -95,98 +120,111 @@ public class AudioRecorder {
     }
     
     private void recordAudio() {
-        byte[] buffer = new byte[BUFFER_SIZE];
-        int bufferOffset = 0;
-        long lastSendTime = System.currentTimeMillis();
+        AudioRecord record = audioRecord;
+        if (record == null) {
+            return;
+        }
         
         // 提高录音线程优先级
         Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
         Log.d(TAG, "Recording thread priority set to MAX_PRIORITY");
         
-        while (isRecording.get()) {
-            int readBytes = audioRecord.read(buffer, bufferOffset, buffer.length - bufferOffset);
-            
-            if (readBytes < 0) {
-                Log.e(TAG, "Error reading audio data: " + readBytes);
-                break;
-            } else if (readBytes == 0) {
-                try {
-                    // 检查是否超过最大等待时间，超过则发送数据
-                    if (bufferOffset > 0 && System.currentTimeMillis() - lastSendTime > MAX_BUFFER_TIME) {
-                        Log.d(TAG, "Buffer timeout, sending available data: " + bufferOffset + " bytes");
-                        byte[] availableData = new byte[bufferOffset];
-                        System.arraycopy(buffer, 0, availableData, 0, bufferOffset);
-                        if (listener != null) {
-                            listener.onAudioData(availableData);
-                        }
-                        bufferOffset = 0;
-                        lastSendTime = System.currentTimeMillis();
-                    }
-                    
-                    // 短暂休眠，避免CPU占用过高
-                    Thread.sleep(10);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+        // 阻塞读取整帧数据，直接写入音频块的直接内存缓冲区，不再经过中间byte[]拷贝；每帧唤醒一次，帧长由控制器调整
+        FramingController framing = framingController;
+        IntSupplier frameBytes = framing != null ? () -> framing.nextFrameBytes(System.nanoTime()) : () -> CHUNK_SIZE;
+        captureLoop((buffer, size) -> record.read(buffer, size, AudioRecord.READ_BLOCKING),
+                chunkPool, frameBytes, listener, isRecording::get);
+        
+        Log.d(TAG, "Recording thread exiting");
+    }
+    
+    /**
+     * 采集循环：每次从缓冲池取一个音频块，读满frameBytes给出的字节数（不超过块容量）后交给监听方，循环内不分配对象
+     */
+    static void captureLoop(PcmSource source, AudioChunkPool pool, IntSupplier frameBytes,
+                            AudioListener listener, BooleanSupplier running) {
+        while (running.getAsBoolean()) {
+            AudioChunk chunk = pool.acquire();
+            int size = Math.min(frameBytes.getAsInt(), pool.chunkCapacity()) & ~1;
+            int readBytes = source.read(chunk.buffer(), size);
+            if (readBytes <= 0) {
+                chunk.release();
+                if (readBytes < 0) {
+                    Log.e(TAG, "Error reading audio data: " + readBytes);
                     break;
                 }
                 continue;
             }
             
-            // 检查缓冲区是否即将溢出
-            if (bufferOffset + readBytes > buffer.length * BUFFER_THRESHOLD) {
-                // 立即发送当前可用数据，避免溢出
-                if (bufferOffset > 0 && listener != null) {
-                    byte[] availableData = new byte[bufferOffset];
-                    System.arraycopy(buffer, 0, availableData, 0, bufferOffset);
-                    listener.onAudioData(availableData);
-                    bufferOffset = 0;
-                    lastSendTime = System.currentTimeMillis();
-                }
-            }
-            
-            bufferOffset += readBytes;
-            
-            // 当缓冲区有完整的CHUNK_SIZE数据时，发送所有完整块
-            while (bufferOffset >= CHUNK_SIZE) {
-                byte[] chunk = new byte[CHUNK_SIZE];
-                System.arraycopy(buffer, 0, chunk, 0, CHUNK_SIZE);
-                
-                // 发送音频数据
-                if (listener != null) {
-                    listener.onAudioData(chunk);
-                }
-                
-                // 将剩余数据移到缓冲区开头
-                int remaining = bufferOffset - CHUNK_SIZE;
-                if (remaining > 0) {
-                    System.arraycopy(buffer, CHUNK_SIZE, buffer, 0, remaining);
-                }
-                bufferOffset = remaining;
-                lastSendTime = System.currentTimeMillis();
-            }
-            
-            // 如果剩余数据达到MIN_CHUNK_SIZE，也立即发送，避免数据堆积
-            if (bufferOffset >= MIN_CHUNK_SIZE) {
-                byte[] chunk = new byte[bufferOffset];
-                System.arraycopy(buffer, 0, chunk, 0, bufferOffset);
-                
-                // 发送音频数据
-                if (listener != null) {
-                    listener.onAudioData(chunk);
-                }
-                bufferOffset = 0;
-                lastSendTime = System.currentTimeMillis();
+            chunk.setFilled(readBytes, System.nanoTime());
+            CHUNKS_CAPTURED.increment();
+            if (listener != null) {
+                listener.onAudioData(chunk);
+            } else {
+                chunk.release();
             }
         }
+    }
+    
+    /**
+     * 采集路径基准测试：用合成的正弦波代替麦克风跑完整的采集循环，
+     * 统计吞吐量以及测量期间缓冲池新分配的块数和堆内存增长，验证稳定状态下采集线程不产生垃圾
+     */
+    public static Map<String, Object> benchmarkCapture(int chunks) {
+        AudioChunkPool pool = new AudioChunkPool(CHUNK_CAPACITY, POOL_CHUNKS, POOL_CHUNKS * 2);
+        SyntheticSource source = new SyntheticSource();
+        long[] checksum = new long[1];
+        AudioListener consumer = chunk -> {
+            checksum[0] += chunk.sample(1);
+            chunk.release();
+        };
         
-        // 处理剩余数据
-        if (bufferOffset > 0 && listener != null) {
-            byte[] remaining = new byte[bufferOffset];
-            System.arraycopy(buffer, 0, remaining, 0, bufferOffset);
-            listener.onAudioData(remaining);
-        }
+        // 预热，排除JIT编译和类加载的影响
+        int[] remaining = {Math.min(chunks, 1000)};
+        captureLoop(source, pool, () -> CHUNK_SIZE, consumer, () -> remaining[0]-- > 0);
         
-        Log.d(TAG, "Recording thread exiting");
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long allocationsBefore = pool.allocations();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        remaining[0] = chunks;
+        long startTime = System.nanoTime();
+        captureLoop(source, pool, () -> CHUNK_SIZE, consumer, () -> remaining[0]-- > 0);
+        long elapsedNanos = System.nanoTime() - startTime;
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+        
+        double audioSeconds = (double) chunks * CHUNK_SIZE / (SAMPLE_RATE * 2);
+        Map<String, Object> report = new HashMap<>();
+        report.put("chunks", chunks);
+        report.put("chunkBytes", CHUNK_SIZE);
+        report.put("elapsedMs", elapsedNanos / 1e6);
+        report.put("chunksPerSec", elapsedNanos > 0 ? chunks * 1e9 / elapsedNanos : 0.0);
+        report.put("realtimeFactor", elapsedNanos > 0 ? audioSeconds * 1e9 / elapsedNanos : 0.0);
+        report.put("poolAllocationsDuringRun", pool.allocations() - allocationsBefore);
+        // 只作参考：其他线程的分配和GC也会影响这个值
+        report.put("heapGrowthBytes", heapAfter - heapBefore);
+        report.put("checksum", checksum[0]);
+        Log.d(TAG, "采集路径基准测试: " + report);
+        return report;
+    }
+    
+    /**
+     * 合成的440Hz正弦波PCM数据源
+     */
+    private static class SyntheticSource implements PcmSource {
+        private static final double PHASE_STEP = 2 * Math.PI * 440 / SAMPLE_RATE;
+        private double phase = 0;
+        
+        @Override
+        public int read(ByteBuffer buffer, int sizeInBytes) {
+            int samples = sizeInBytes / 2;
+            for (int i = 0; i < samples; i++) {
+                buffer.putShort(i * 2, (short) (Math.sin(phase) * 8000));
+                phase += PHASE_STEP;
+            }
+            phase %= 2 * Math.PI;
+            return samples * 2;
+        }
     }
     
     public boolean isRecording() {
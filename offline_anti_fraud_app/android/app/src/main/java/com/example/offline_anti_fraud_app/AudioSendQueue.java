@@ -0,0 +1,145 @@
+package com.example.offline_anti_fraud_app;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 录音线程与发送线程之间的有界音频队列
+ * 单生产者单消费者的环形数组，不加锁。队列满时由录音线程丢弃最旧的音频块，积压的音频最多延迟capacity个块的时长；
+ * 发送线程按策略取出：DROP_OLDEST每次取一块，COALESCE把积压的多块合并成一帧发出，减少网络拥塞时的帧数和编码开销。
+ * 出队和丢弃最旧块都通过CAS推进head，谁推进成功谁负责该块的释放
+ */
+public class AudioSendQueue {
+    private static final Metrics.Gauge QUEUE_DEPTH = Metrics.gauge("asr.sendQueueDepth");
+    private static final Metrics.Counter CHUNKS_DROPPED = Metrics.counter("asr.chunksDropped"); // 队列满时丢弃的最旧音频块
+    
+    /**
+     * 积压时的处理策略
+     */
+    public enum Policy {
+        DROP_OLDEST,
+        COALESCE
+    }
+    
+    private final AudioChunk[] slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // 下一个取出的序号
+    private final AtomicLong tail = new AtomicLong(); // 下一个写入的序号，只由录音线程推进
+    private volatile Thread waiter; // 正在等待音频的发送线程
+    private volatile Policy policy;
+    
+    /**
+     * @param capacity 队列容量，向上取整为2的幂
+     */
+    public AudioSendQueue(int capacity, Policy policy) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AudioChunk[size];
+        this.mask = size - 1;
+        this.policy = policy;
+    }
+    
+    public Policy getPolicy() {
+        return policy;
+    }
+    
+    public void setPolicy(Policy policy) {
+        this.policy = policy;
+    }
+    
+    public int capacity() {
+        return slots.length;
+    }
+    
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+    
+    /**
+     * 录音线程放入音频块，队列满时先丢弃并释放最旧的块，不会阻塞
+     * @return 丢弃的块数
+     */
+    public int offer(AudioChunk chunk) {
+        long t = tail.get();
+        int dropped = 0;
+        long h;
+        while (t - (h = head.get()) >= slots.length) {
+            AudioChunk oldest = slots[(int) (h & mask)];
+            if (head.compareAndSet(h, h + 1)) {
+                oldest.release();
+                dropped++;
+            }
+        }
+        slots[(int) (t & mask)] = chunk;
+        tail.set(t + 1);
+        QUEUE_DEPTH.set(t + 1 - h);
+        if (dropped > 0) {
+            CHUNKS_DROPPED.add(dropped);
+        }
+        
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        return dropped;
+    }
+    
+    /**
+     * 发送线程取出一块，队列为空时返回null。
+     * 槽位中的旧引用不清空：此时录音线程可能正在写入同一槽位，而音频块本身来自缓冲池，保留引用不会多占内存
+     */
+    public AudioChunk poll() {
+        while (true) {
+            long h = head.get();
+            if (h >= tail.get()) {
+                return null;
+            }
+            AudioChunk chunk = slots[(int) (h & mask)];
+            if (head.compareAndSet(h, h + 1)) {
+                QUEUE_DEPTH.set(Math.max(0, tail.get() - h - 1));
+                return chunk;
+            }
+        }
+    }
+    
+    /**
+     * 发送线程按策略取出下一帧的音频块，队列为空时最多等待timeoutNanos
+     * @param batch 取出的音频块，调用方负责释放
+     * @param maxBytes COALESCE策略下一帧最多合并的字节数，至少取出一块
+     * @return 取出的块数，超时为0
+     */
+    public int drainTo(AudioChunk[] batch, int maxBytes, long timeoutNanos) {
+        AudioChunk first = poll();
+        if (first == null) {
+            waiter = Thread.currentThread();
+            // 登记后再查一次，避免错过登记前放入的音频块的唤醒
+            first = poll();
+            if (first == null) {
+                LockSupport.parkNanos(this, timeoutNanos);
+                first = poll();
+            }
+            waiter = null;
+            if (first == null) {
+                return 0;
+            }
+        }
+        batch[0] = first;
+        int count = 1;
+        if (policy == Policy.COALESCE) {
+            int bytes = first.length();
+            while (count < batch.length) {
+                // 只看不取：下一块放不进本帧就留给下一帧
+                long h = head.get();
+                if (h >= tail.get() || bytes + slots[(int) (h & mask)].length() > maxBytes) {
+                    break;
+                }
+                AudioChunk next = poll();
+                if (next == null) {
+                    break;
+                }
+                batch[count++] = next;
+                bytes += next.length();
+            }
+        }
+        return count;
+    }
+}
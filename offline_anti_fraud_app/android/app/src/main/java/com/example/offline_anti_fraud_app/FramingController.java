@@ -0,0 +1,118 @@
+package com.example.offline_anti_fraud_app;
+
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应分帧控制器
+ * 录音线程每次阻塞读取前向控制器取帧长：网络拥塞（往返时延高或发送队列积压）时帧长加倍，减少帧数和录音线程唤醒次数；
+ * 往返时延低且没有积压时逐步缩短帧长，降低转写延迟。服务端VAD判定有人说话时帧长最短可到MIN_FRAME_MS，
+ * 超过IDLE_AFTER_MS无人说话时不低于DEFAULT_FRAME_MS，安静时少唤醒
+ */
+public class FramingController {
+    private static final String TAG = "FramingController";
+    
+    static final int BYTES_PER_MS = 16000 * 2 / 1000; // 16kHz、16位单声道
+    static final int MIN_FRAME_MS = 40;
+    static final int DEFAULT_FRAME_MS = 100;
+    static final int MAX_FRAME_MS = 200;
+    private static final int SHRINK_STEP_MS = 20;
+    
+    // 拥塞判定
+    private static final double HIGH_RTT_MS = 300;
+    private static final double LOW_RTT_MS = 120;
+    private static final int CONGESTED_QUEUE_DEPTH = 2;
+    private static final double RTT_SMOOTHING = 0.25; // 往返时延指数平滑系数
+    
+    private static final long ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500); // 两次调整的最小间隔
+    private static final long IDLE_AFTER_NANOS = TimeUnit.SECONDS.toNanos(3);
+    
+    private static final Metrics.Gauge FRAME_MS = Metrics.gauge("audio.frameMs");
+    private static final Metrics.Counter FRAME_ADJUSTMENTS = Metrics.counter("audio.frameAdjustments");
+    
+    // 以下由网络线程和发送线程写入，录音线程读取
+    private volatile double smoothedRttMs = -1; // 尚未测得时为-1
+    private volatile int queueDepth = 0;
+    private volatile boolean speaking = false;
+    private volatile long lastSpeechNanos;
+    
+    // 以下只在录音线程访问
+    private int frameMs = DEFAULT_FRAME_MS;
+    private long lastAdjustNanos;
+    
+    public FramingController() {
+        long now = System.nanoTime();
+        lastSpeechNanos = now - IDLE_AFTER_NANOS;
+        lastAdjustNanos = now;
+        FRAME_MS.set(frameMs);
+    }
+    
+    /**
+     * 一次ping的往返时延，pong迟迟未到时也可以传入已等待的时长
+     */
+    public void onRtt(long rttNanos) {
+        double rttMs = rttNanos / 1e6;
+        double previous = smoothedRttMs;
+        smoothedRttMs = previous < 0 ? rttMs : previous + RTT_SMOOTHING * (rttMs - previous);
+    }
+    
+    /**
+     * 发送线程每发出一帧报告一次积压的音频块数
+     */
+    public void onQueueDepth(int depth) {
+        queueDepth = depth;
+    }
+    
+    public void onSpeechStarted() {
+        speaking = true;
+        lastSpeechNanos = System.nanoTime();
+    }
+    
+    public void onSpeechStopped() {
+        speaking = false;
+        lastSpeechNanos = System.nanoTime();
+    }
+    
+    /**
+     * 重新连接后之前的时延不再有参考意义
+     */
+    public void resetNetworkState() {
+        smoothedRttMs = -1;
+        queueDepth = 0;
+    }
+    
+    /**
+     * 录音线程在每次读取前调用，返回本次读取的字节数
+     */
+    public int nextFrameBytes(long nowNanos) {
+        if (nowNanos - lastAdjustNanos >= ADJUST_INTERVAL_NANOS) {
+            lastAdjustNanos = nowNanos;
+            int target = targetFrameMs(frameMs, smoothedRttMs, queueDepth,
+                    speaking || nowNanos - lastSpeechNanos < IDLE_AFTER_NANOS);
+            if (target != frameMs) {
+                if (Metrics.isVerbose()) {
+                    Log.d(TAG, "帧长调整: " + frameMs + "ms -> " + target + "ms, rtt=" + smoothedRttMs + "ms, 积压=" + queueDepth);
+                }
+                frameMs = target;
+                FRAME_MS.set(target);
+                FRAME_ADJUSTMENTS.increment();
+            }
+        }
+        return frameMs * BYTES_PER_MS;
+    }
+    
+    /**
+     * 拥塞时加倍，时延低时按步长缩短，否则保持；不低于当前说话状态下的下限
+     */
+    static int targetFrameMs(int current, double rttMs, int queueDepth, boolean recentSpeech) {
+        int floor = recentSpeech ? MIN_FRAME_MS : DEFAULT_FRAME_MS;
+        if (queueDepth >= CONGESTED_QUEUE_DEPTH || rttMs > HIGH_RTT_MS) {
+            return Math.min(MAX_FRAME_MS, current * 2);
+        }
+        if (rttMs >= 0 && rttMs < LOW_RTT_MS && queueDepth == 0) {
+            return Math.max(floor, current - SHRINK_STEP_MS);
+        }
+        return Math.max(floor, current);
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.offline_anti_fraud_app;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import io.flutter.embedding.engine.FlutterEngine;
@@ -15,12 +17,46 @@ public class FraudDetectionFlutterChannel implements MethodCallHandler {
     
     private final FraudDetectionService fraudDetectionService;
     private final MethodChannel channel;
+    private final Handler mainHandler; // 主线程Handler，用于在主线程回传异步结果
+    private final InferenceExecutor inferenceExecutor; // 相互独立的推理任务在专用线程池并发执行，避免阻塞平台线程
+    private final InferenceExecutor orderedExecutor;   // 需要保持先后顺序的任务（流式会话、带合并键的推理、基准测试）在单线程上串行执行
     
     // 方法名常量
     private static final String METHOD_INIT = "init";
     private static final String METHOD_CLEANUP = "cleanup";
     private static final String METHOD_PREDICT = "predict";
+    private static final String METHOD_PREDICT_BATCH = "predictBatch";
+    private static final String METHOD_PREDICT_LONG_TEXT = "predictLongText";
+    private static final String METHOD_OPEN_STREAM = "openStream";
+    private static final String METHOD_APPEND_TO_STREAM = "appendToStream";
+    private static final String METHOD_SCORE_STREAM = "scoreStream";
+    private static final String METHOD_CLOSE_STREAM = "closeStream";
     private static final String METHOD_IS_INITIALIZED = "isInitialized";
+    private static final String METHOD_GET_INIT_TIMINGS = "getInitTimings";
+    private static final String METHOD_GET_INFERENCE_STATS = "getInferenceStats";
+    private static final String METHOD_BENCHMARK_THROUGHPUT = "benchmarkThroughput";
+    private static final String METHOD_BENCHMARK_CONFIGURATIONS = "benchmarkConfigurations";
+    private static final String METHOD_BENCHMARK_BUCKETS = "benchmarkBuckets";
+    private static final String METHOD_BENCHMARK_ALLOCATIONS = "benchmarkAllocations";
+    private static final String METHOD_GET_INFERENCE_CONFIG = "getInferenceConfig";
+    private static final String METHOD_GET_CACHE_STATS = "getCacheStats";
+    private static final String METHOD_CLEAR_CACHE = "clearCache";
+    private static final String METHOD_GET_SEGMENTATION_CACHE_STATS = "getSegmentationCacheStats";
+    private static final String METHOD_GET_PRE_FILTER_STATS = "getPreFilterStats";
+    private static final String METHOD_BENCHMARK_SEGMENTERS = "benchmarkSegmenters";
+    private static final String METHOD_EVALUATE_SENTENCE_SPLITTING = "evaluateSentenceSplitting";
+    private static final String METHOD_EVALUATE_PRE_FILTER = "evaluatePreFilter";
+    private static final String METHOD_GET_METRICS = "getMetrics";
+    private static final String METHOD_DUMP_METRICS = "dumpMetrics";
+    private static final String METHOD_RESET_METRICS = "resetMetrics";
+    private static final String METHOD_SET_VERBOSE_LOGGING = "setVerboseLogging";
+    
+    // 推理队列容量
+    private static final int INFERENCE_QUEUE_CAPACITY = 16;
+    // 独立推理任务的并发线程数：模型服务支持并发推理，但单次ONNX推理已在intraOp线程池内并行，
+    // 并发线程过多只会争抢CPU，2个线程可以让短文本不必排在长文本和批量推理之后；
+    // 目标设备上的并发扩展情况用benchmarkThroughput测量
+    private static final int INFERENCE_THREADS = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2));
     
     // 错误码常量
     private static final String ERROR_INIT_FAILED = "INIT_FAILED";
@@ -31,6 +67,11 @@ public class FraudDetectionFlutterChannel implements MethodCallHandler {
         this.fraudDetectionService = new FraudDetectionService(context);
         this.channel = new MethodChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), CHANNEL_NAME);
         this.channel.setMethodCallHandler(this);
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.inferenceExecutor = new InferenceExecutor("fraud-inference", INFERENCE_THREADS, INFERENCE_QUEUE_CAPACITY,
+                FraudDetectionFlutterChannel::toErrorCode);
+        this.orderedExecutor = new InferenceExecutor("fraud-inference-ordered", 1, INFERENCE_QUEUE_CAPACITY,
+                FraudDetectionFlutterChannel::toErrorCode);
         
         Log.d(TAG, "FraudDetectionFlutterChannel initialized");
     }
@@ -39,15 +80,29 @@ public class FraudDetectionFlutterChannel implements MethodCallHandler {
     public void onMethodCall(MethodCall call, Result result) {
         try {
             if (METHOD_INIT.equals(call.method)) {
-                // 初始化模型服务
-                boolean success = fraudDetectionService.initialize();
-                result.success(success);
-                Log.d(TAG, "Received init command, result: " + success);
+                // 异步初始化模型服务，不阻塞平台线程，完成后在主线程回传结果
+                Log.d(TAG, "Received init command");
+                
+                // 可选的推理配置，下次真正执行初始化时生效（已初始化时需先cleanup）
+                if (call.hasArgument("config")) {
+                    java.util.Map<String, Object> config = call.argument("config");
+                    fraudDetectionService.setInferenceConfig(config != null ? InferenceConfig.fromMap(config) : null);
+                }
+                fraudDetectionService.initializeAsync().whenComplete((success, error) -> mainHandler.post(() -> {
+                    if (error != null) {
+                        Log.e(TAG, "Init failed: " + error.getMessage());
+                        result.error(ERROR_INIT_FAILED, error.getMessage(), null);
+                    } else {
+                        result.success(success);
+                        Log.d(TAG, "Init completed, result: " + success + ", timings: " + fraudDetectionService.getInitTimings());
+                    }
+                }));
             } else if (METHOD_CLEANUP.equals(call.method)) {
-                // 释放模型服务资源
+                // 释放模型服务资源，不经过推理队列，队列已满时也不会被拒绝；
+                // 正在执行的推理持有模型引用，结束后Session才会关闭，之后排队的推理得到NOT_INITIALIZED
+                Log.d(TAG, "Received cleanup command");
                 fraudDetectionService.cleanup();
                 result.success(true);
-                Log.d(TAG, "Received cleanup command");
             } else if (METHOD_PREDICT.equals(call.method)) {
                 // 模型推理
                 String text = call.argument("text");
@@ -56,22 +111,204 @@ public class FraudDetectionFlutterChannel implements MethodCallHandler {
                     return;
                 }
                 
-                FraudDetectionService.FraudResult predResult = fraudDetectionService.predict(text);
+                // 可选的合并键：同一来源的新请求到达时，排队中的旧请求直接得到新结果；
+                // 同一来源的结果需要按提交顺序返回，带合并键的请求在单线程上执行
+                String streamKey = call.argument("streamKey");
+                InferenceExecutor executor = streamKey != null ? orderedExecutor : inferenceExecutor;
+                
+                executor.submit(streamKey != null ? "predict:" + streamKey : null, () -> {
+                    FraudDetectionService.FraudResult predResult = fraudDetectionService.predict(text);
+                    if (Metrics.isVerbose()) {
+                        Log.d(TAG, "Predict completed, result: " + predResult.toString());
+                    }
+                    return toResultMap(predResult);
+                }, result);
+            } else if (METHOD_PREDICT_BATCH.equals(call.method)) {
+                // 批量模型推理
+                java.util.List<String> texts = call.argument("texts");
+                if (texts == null) {
+                    result.error(ERROR_PREDICT_FAILED, "Texts argument is null", null);
+                    return;
+                }
+                
+                inferenceExecutor.submit(null, () -> {
+                    java.util.List<FraudDetectionService.FraudResult> predResults = fraudDetectionService.predictBatch(texts);
+                    
+                    java.util.List<java.util.Map<String, Object>> resultList = new java.util.ArrayList<>();
+                    for (FraudDetectionService.FraudResult predResult : predResults) {
+                        resultList.add(toResultMap(predResult));
+                    }
+                    if (Metrics.isVerbose()) {
+                        Log.d(TAG, "PredictBatch completed, batch size: " + predResults.size());
+                    }
+                    return resultList;
+                }, result);
+            } else if (METHOD_PREDICT_LONG_TEXT.equals(call.method)) {
+                // 长文本滑动窗口推理，返回聚合结果和每个窗口的诈骗概率
+                String text = call.argument("text");
+                if (text == null) {
+                    result.error(ERROR_PREDICT_FAILED, "Text argument is null", null);
+                    return;
+                }
+                Integer stride = call.argument("stride");
+                String pooling = call.argument("pooling");
+                
+                inferenceExecutor.submit(null, () -> {
+                    FraudDetectionService.LongTextResult longTextResult = fraudDetectionService.predictLongText(text,
+                            stride != null ? stride : 0,
+                            pooling != null ? FraudDetectionService.Pooling.valueOf(pooling) : FraudDetectionService.Pooling.MAX);
+                    
+                    java.util.Map<String, Object> resultMap = toResultMap(longTextResult.result);
+                    java.util.List<Integer> windowStarts = new java.util.ArrayList<>();
+                    java.util.List<Double> windowFraudProbs = new java.util.ArrayList<>();
+                    for (int i = 0; i < longTextResult.windowStarts.length; i++) {
+                        windowStarts.add(longTextResult.windowStarts[i]);
+                        windowFraudProbs.add((double) longTextResult.windowFraudProbs[i]);
+                    }
+                    resultMap.put("tokenCount", longTextResult.tokenCount);
+                    resultMap.put("windowStarts", windowStarts);
+                    resultMap.put("windowFraudProbs", windowFraudProbs);
+                    resultMap.put("maxFraudProb", longTextResult.maxFraudProb);
+                    resultMap.put("meanFraudProb", longTextResult.meanFraudProb);
+                    resultMap.put("attentionFraudProb", longTextResult.attentionFraudProb);
+                    if (Metrics.isVerbose()) {
+                        Log.d(TAG, "PredictLongText completed, windows: " + windowStarts.size());
+                    }
+                    return resultMap;
+                }, result);
+            } else if (METHOD_OPEN_STREAM.equals(call.method)) {
+                // 打开流式检测会话
+                int streamId = fraudDetectionService.openStream();
+                result.success(streamId);
+                Log.d(TAG, "Received openStream command, streamId: " + streamId);
+            } else if (METHOD_APPEND_TO_STREAM.equals(call.method)) {
+                // 向流式会话追加句子
+                Integer streamId = call.argument("streamId");
+                String sentence = call.argument("sentence");
+                if (streamId == null) {
+                    result.error(ERROR_PREDICT_FAILED, "StreamId argument is null", null);
+                    return;
+                }
                 
-                // 构建结果映射
-                java.util.Map<String, Object> resultMap = new java.util.HashMap<>();
-                resultMap.put("predLabel", predResult.predLabel);
-                resultMap.put("predProb", predResult.predProb);
-                resultMap.put("normalProb", predResult.normalProb);
-                resultMap.put("fraudProb", predResult.fraudProb);
+                // 追加任务不能合并，且需要与评分任务保持先后顺序
+                orderedExecutor.submit(null, () -> {
+                    fraudDetectionService.appendToStream(streamId, sentence);
+                    return true;
+                }, result);
+            } else if (METHOD_SCORE_STREAM.equals(call.method)) {
+                // 对流式会话执行推理
+                Integer streamId = call.argument("streamId");
+                if (streamId == null) {
+                    result.error(ERROR_PREDICT_FAILED, "StreamId argument is null", null);
+                    return;
+                }
                 
-                result.success(resultMap);
-                Log.d(TAG, "Received predict command, result: " + predResult.toString());
+                // 同一会话排队中的旧评分请求会被合并
+                orderedExecutor.submit("stream:" + streamId, () -> {
+                    FraudDetectionService.FraudResult predResult = fraudDetectionService.scoreStream(streamId);
+                    if (Metrics.isVerbose()) {
+                        Log.d(TAG, "ScoreStream completed, result: " + predResult.toString());
+                    }
+                    return toResultMap(predResult);
+                }, result);
+            } else if (METHOD_CLOSE_STREAM.equals(call.method)) {
+                // 关闭流式检测会话
+                Integer streamId = call.argument("streamId");
+                if (streamId != null) {
+                    fraudDetectionService.closeStream(streamId);
+                }
+                result.success(true);
             } else if (METHOD_IS_INITIALIZED.equals(call.method)) {
                 // 检查模型服务是否已初始化
                 boolean isInitialized = fraudDetectionService.isInitialized();
                 result.success(isInitialized);
                 Log.d(TAG, "Received isInitialized command, result: " + isInitialized);
+            } else if (METHOD_GET_INIT_TIMINGS.equals(call.method)) {
+                // 获取初始化各阶段耗时
+                result.success(fraudDetectionService.getInitTimings());
+            } else if (METHOD_GET_INFERENCE_STATS.equals(call.method)) {
+                // 获取推理队列深度和等待时间
+                result.success(getInferenceStats());
+            } else if (METHOD_BENCHMARK_THROUGHPUT.equals(call.method)) {
+                // 多线程吞吐量基准测试，在顺序执行线程上发起，期间排队的流式请求会等待
+                String text = call.argument("text");
+                Integer maxThreads = call.argument("maxThreads");
+                Integer iterations = call.argument("iterations");
+                if (text == null) {
+                    result.error(ERROR_PREDICT_FAILED, "Text argument is null", null);
+                    return;
+                }
+                orderedExecutor.submit(null, () -> fraudDetectionService.benchmarkThroughput(text,
+                        maxThreads != null ? maxThreads : Runtime.getRuntime().availableProcessors(),
+                        iterations != null ? iterations : 20), result);
+            } else if (METHOD_BENCHMARK_CONFIGURATIONS.equals(call.method)) {
+                // 推理配置基准测试，记录当前设备上最快的配置供下次初始化使用
+                String text = call.argument("text");
+                Integer iterations = call.argument("iterations");
+                if (text == null) {
+                    result.error(ERROR_PREDICT_FAILED, "Text argument is null", null);
+                    return;
+                }
+                orderedExecutor.submit(null, () -> fraudDetectionService.benchmarkConfigurations(text,
+                        iterations != null ? iterations : 20), result);
+            } else if (METHOD_BENCHMARK_BUCKETS.equals(call.method)) {
+                // 各填充长度分桶与固定长度填充的单条推理延迟和概率差
+                Integer iterations = call.argument("iterations");
+                orderedExecutor.submit(null, () -> fraudDetectionService.benchmarkBuckets(
+                        iterations != null ? iterations : 20), result);
+            } else if (METHOD_BENCHMARK_ALLOCATIONS.equals(call.method)) {
+                // 单条推理热路径每次调用的稳态内存分配，text为空时使用初始化测试文本
+                String text = call.argument("text");
+                Integer iterations = call.argument("iterations");
+                orderedExecutor.submit(null, () -> fraudDetectionService.benchmarkAllocations(text,
+                        iterations != null ? iterations : 1000), result);
+            } else if (METHOD_GET_CACHE_STATS.equals(call.method)) {
+                // 获取推理结果缓存的命中、未命中和淘汰统计
+                result.success(fraudDetectionService.getResultCacheStats());
+            } else if (METHOD_CLEAR_CACHE.equals(call.method)) {
+                // 清空推理结果缓存和分句分词缓存
+                fraudDetectionService.clearCaches();
+                result.success(true);
+            } else if (METHOD_GET_SEGMENTATION_CACHE_STATS.equals(call.method)) {
+                // 获取分句分词缓存的命中、未命中和淘汰统计
+                result.success(fraudDetectionService.getSegmentationCacheStats());
+            } else if (METHOD_GET_PRE_FILTER_STATS.equals(call.method)) {
+                // 获取一级预筛选的放行/升级次数和比例
+                result.success(fraudDetectionService.getPreFilterStats());
+            } else if (METHOD_BENCHMARK_SEGMENTERS.equals(call.method)) {
+                // Jieba与词表最大匹配分词的吞吐量和一致率对比，未传texts时使用题库语料
+                java.util.List<String> texts = call.argument("texts");
+                orderedExecutor.submit(null, () -> fraudDetectionService.benchmarkSegmenters(texts), result);
+            } else if (METHOD_EVALUATE_SENTENCE_SPLITTING.equals(call.method)) {
+                // Jieba按句切分与整段分词的逐词一致率、预测标签一致率和概率差，未传texts时使用题库语料
+                java.util.List<String> texts = call.argument("texts");
+                orderedExecutor.submit(null, () -> fraudDetectionService.evaluateSentenceSplitting(texts), result);
+            } else if (METHOD_EVALUATE_PRE_FILTER.equals(call.method)) {
+                // 以模型判定为参照评估预筛选的放行率和漏检率，未传texts时使用题库语料，未传passThreshold时使用当前阈值
+                java.util.List<String> texts = call.argument("texts");
+                Number passThreshold = call.argument("passThreshold");
+                orderedExecutor.submit(null, () -> fraudDetectionService.evaluatePreFilter(texts,
+                        passThreshold != null ? passThreshold.floatValue() : null), result);
+            } else if (METHOD_GET_METRICS.equals(call.method)) {
+                // 获取热路径指标（分词、ONNX推理、排队等待、ASR发送等）及各缓存统计
+                java.util.Map<String, Object> metrics = fraudDetectionService.getMetrics();
+                metrics.put("inferenceQueue", getInferenceStats());
+                result.success(metrics);
+            } else if (METHOD_DUMP_METRICS.equals(call.method)) {
+                // 把当前指标导出为JSON文件，返回文件路径
+                orderedExecutor.submit(null, fraudDetectionService::dumpMetrics, result);
+            } else if (METHOD_RESET_METRICS.equals(call.method)) {
+                // 清零热路径指标
+                Metrics.reset();
+                result.success(true);
+            } else if (METHOD_SET_VERBOSE_LOGGING.equals(call.method)) {
+                // 开关每次推理的详细日志，默认关闭
+                Boolean enabled = call.argument("enabled");
+                Metrics.setVerbose(enabled != null && enabled);
+                result.success(true);
+            } else if (METHOD_GET_INFERENCE_CONFIG.equals(call.method)) {
+                // 获取当前使用的推理配置
+                result.success(fraudDetectionService.getInferenceConfig().toMap());
             } else {
                 result.notImplemented();
                 Log.w(TAG, "Received unknown method: " + call.method);
@@ -85,8 +322,44 @@ public class FraudDetectionFlutterChannel implements MethodCallHandler {
         }
     }
     
+    private static String toErrorCode(Throwable e) {
+        return e instanceof IllegalStateException ? ERROR_NOT_INITIALIZED : ERROR_PREDICT_FAILED;
+    }
+    
+    /**
+     * 两个推理执行器的队列深度和等待时间统计
+     */
+    private java.util.Map<String, Object> getInferenceStats() {
+        java.util.Map<String, Object> stats = new java.util.HashMap<>();
+        stats.put("pool", inferenceExecutor.getStats());
+        stats.put("ordered", orderedExecutor.getStats());
+        return stats;
+    }
+    
+    /**
+     * 构建结果映射
+     */
+    private java.util.Map<String, Object> toResultMap(FraudDetectionService.FraudResult predResult) {
+        java.util.Map<String, Object> resultMap = new java.util.HashMap<>();
+        resultMap.put("predLabel", predResult.predLabel);
+        resultMap.put("predProb", predResult.predProb);
+        resultMap.put("normalProb", predResult.normalProb);
+        resultMap.put("fraudProb", predResult.fraudProb);
+        resultMap.put("preFiltered", predResult.preFiltered);
+        return resultMap;
+    }
+    
+    /**
+     * 与其他原生通道共享同一个模型服务实例
+     */
+    public FraudDetectionService getFraudDetectionService() {
+        return fraudDetectionService;
+    }
+    
     public void dispose() {
-        // 释放模型服务资源
+        // 停止推理线程并释放模型服务资源
+        inferenceExecutor.shutdown();
+        orderedExecutor.shutdown();
         fraudDetectionService.cleanup();
         // 移除方法调用处理器
         channel.setMethodCallHandler(null);
@@ -2,9 +2,11 @@ package com.example.offline_anti_fraud_app;
 
 import android.content.Context;
 import android.content.res.AssetManager;
+import android.os.Debug;
 import android.util.Log;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.util.Log;
 
@@ -14,138 +16,384 @@ import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FraudDetectionService {
     private static final String TAG = "FraudDetectionService";
     
+    // 热路径指标
+    private static final Metrics.Histogram TOKENIZE_TIME = Metrics.histogram("inference.tokenizeTime");
+    private static final Metrics.Histogram ORT_RUN_TIME = Metrics.histogram("inference.ortRunTime");
+    private static final Metrics.Counter ORT_RUNS = Metrics.counter("inference.ortRuns");
+    private static final Metrics.Counter ORT_RUN_ROWS = Metrics.counter("inference.ortRunRows");
+    
     // 模型配置参数
     private static final String MODEL_PATH = "bilstm_fraud_detector_cpu_int8.onnx";
     private static final String WORD2IDX_PATH = "word2idx.json";
+    private static final String MODEL_CACHE_DIR = "models"; // 模型被压缩时解压到应用私有目录下的该子目录
+    private static final String WORD2IDX_BINARY_PATH = "word2idx.bin"; // 构建时由word2idx.json生成，不压缩存放
+    private static final String OPTIMIZED_MODEL_DIR = "optimized"; // 图优化后的模型缓存，位于MODEL_CACHE_DIR下
+    private static final String BEST_CONFIG_FILE = "inference_config.json"; // 配置基准测试记录的最快配置，位于MODEL_CACHE_DIR下
     private static final int MAX_SEQ_LEN = 400;
+    // 动态填充的长度分桶，最后一档必须等于MAX_SEQ_LEN
+    private static final int[] SEQ_LEN_BUCKETS = {64, 128, 256, MAX_SEQ_LEN};
+    // 分桶结果与固定长度结果允许的最大概率差
+    private static final float BUCKET_PARITY_TOLERANCE = 1e-3f;
+    // 固定长度填充：只有MAX_SEQ_LEN一个分桶
+    private static final int[] FIXED_SEQ_LEN_BUCKETS = {MAX_SEQ_LEN};
+    // 长文本滑动窗口的默认步长（相邻窗口重叠MAX_SEQ_LEN - 步长个词）和单次ONNX推理的最大窗口数
+    private static final int LONG_TEXT_DEFAULT_STRIDE = 300;
+    private static final int LONG_TEXT_MAX_WINDOWS_PER_RUN = 16;
+    // 批量推理单次ONNX推理的最大行数，与长文本窗口上限一致，限制[N, L]输入和中间激活占用的内存
+    private static final int BATCH_MAX_ROWS_PER_RUN = LONG_TEXT_MAX_WINDOWS_PER_RUN;
+    // 注意力式池化的温度，越小越接近取最大值
+    private static final float ATTENTION_POOLING_TEMPERATURE = 0.1f;
+    // 同时存在的流式会话上限和空闲超时，Flutter侧没有关闭的会话到期或超出上限时被回收
+    private static final int MAX_STREAMS = 8;
+    private static final long STREAM_IDLE_TIMEOUT_NANOS = 10L * 60 * 1_000_000_000L; // 10分钟
+    // 推理结果缓存的最大条目数，每条约几十字节
+    private static final int RESULT_CACHE_CAPACITY = 512;
+    // 分句分词缓存最多保存的词数
+    private static final int SEGMENTATION_CACHE_MAX_TOKENS = 16384;
+    // 分句使用的句末标点，标点本身归入前一句
+    private static final String SENTENCE_DELIMITERS = "。！？!?；;\n";
+    // 按句切分的语料一致性校验：最多比对的文本数，以及启用按句切分要求的预测标签一致率和平均概率差上限
+    private static final int SENTENCE_SPLIT_CHECK_MAX_TEXTS = 64;
+    private static final double SENTENCE_SPLIT_MIN_LABEL_AGREEMENT = 0.98;
+    private static final double SENTENCE_SPLIT_MAX_MEAN_PROB_DIFF = 0.02;
+    // Flutter打包的题库，用作分词器对比的语料
+    private static final String QUESTION_BANK_PATH = "flutter_assets/assets/Question_bank.json";
+    private static final String PREFILTER_WEIGHTS_PATH = "prefilter_weights.txt";
+    private static final String METRICS_DIR = "metrics"; // 指标导出文件目录，位于应用私有目录下
     private static final int PAD_IDX = 0;
     private static final int UNK_IDX = 1;
     private static final int POS_LABEL = 1; // 1=诈骗，0=正常
+    // 初始化检查使用的测试文本
+    private static final String INIT_CHECK_TEXT = "A: 孙先生，根据您上次在社区健康讲座上的登记，我们发现您对改善睡眠和心脑健康特别关注，正好今天有一批日本进口的深海鱼油软胶囊到货，功效提升30%…B: 我什么时候登记过？我没去过什么讲座。A: 诶，您别急着否认！可能是家人代您登记的。而且系统显示您近期的体检报告中，微量元素硒含量偏低，这可关乎免疫力！我们这款德国富硒酵母片就是专门针对这种状况的B: 什么系统？我没做过那种检查。免疫力挺好的。A: 方女士，健康数据是不会骗人的！现在忽视骨骼健康，将来受罪的可是自己。我们特别为像您这样有远见的客户准备了限量版的纳米高钙片，比普通钙片吸收快五倍…B: 限量版？听起来像是在清库存。A: 刘主任，您看您说笑了！我们这可是高科技产品，市场需求量大得很！不过今天，只要您订购一个疗程的高钙片，就能免费获赠一瓶市价千元的澳洲进口辅酶Q10，这可是心脏的保护神！B: 免费送？那岂不是把高钙片的钱算进去了。A: 杜先生，这账可不能这么算！健康是无价的！您想想，有多少人因为肠胃不适吃不下睡不好？我们这款复合益生菌固体饮料，能有效调节肠道菌群，改善消化吸收，让您浑身舒畅…B: 我平时吃得挺好的，没什么不舒服。";
     
-    // ONNX Runtime相关
+    // ONNX Runtime环境（进程内单例）
     private OrtEnvironment ortEnvironment;
-    private OrtSession ortSession;
     
-    // 词表和分词器
-    private Map<String, Integer> word2idx;
-    private JiebaSegmenter jiebaSegmenter;
+    // 初始化完成后发布的不可变模型状态（词表、分词器和Session），推理时无锁读取
+    private volatile ModelState modelState;
+    
+    // 调用方指定的推理配置，为null时使用基准测试记录的最快配置或默认配置
+    private volatile InferenceConfig requestedConfig;
+    // 最近一次初始化实际使用的推理配置
+    private volatile InferenceConfig activeConfig = InferenceConfig.defaults();
+    
+    // 推理结果缓存，键为词索引序列的哈希；填充长度不影响结果（由分桶一致性校验保证），因此不参与哈希
+    private final ResultCache resultCache = new ResultCache(RESULT_CACHE_CAPACITY);
+    
+    // 分句分词缓存，键为句子文本；只有模型状态启用了按句切分时，整段文本的预测才会用到
+    private final SegmentationCache segmentationCache = new SegmentationCache(SEGMENTATION_CACHE_MAX_TOKENS);
+    
+    // 流式检测会话，数量受MAX_STREAMS限制
+    private final Map<Integer, TokenStream> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger nextStreamId = new AtomicInteger(0);
+    
+    // 每个推理线程复用的预处理与输入缓冲区
+    private final ThreadLocal<InferenceBuffers> inferenceBuffers = new ThreadLocal<InferenceBuffers>() {
+        @Override
+        protected InferenceBuffers initialValue() {
+            return new InferenceBuffers(MAX_SEQ_LEN);
+        }
+    };
     
-    // 初始化标志
-    private boolean isInitialized = false;
+    // 异步初始化状态：进行中或最近一次的初始化Future，cleanup时递增代数以丢弃进行中的结果
+    private CompletableFuture<Boolean> initFuture;
+    private int initGeneration = 0;
+    private final Map<String, Long> initTimings = new ConcurrentHashMap<>();
     
     // 上下文
     private final Context context;
     
     public FraudDetectionService(Context context) {
+        this(context, null);
+    }
+    
+    public FraudDetectionService(Context context, InferenceConfig config) {
         this.context = context;
+        this.requestedConfig = config;
     }
     
     /**
-     * 初始化模型服务
+     * 同步初始化模型服务（阻塞直到异步初始化完成）
      */
-    public synchronized boolean initialize() {
-        if (isInitialized) {
-            Log.d(TAG, "模型服务已经初始化");
-            return true;
+    public boolean initialize() {
+        return initializeAsync().join();
+    }
+    
+    /**
+     * 异步初始化模型服务：词表、Jieba词典和ONNX Session并行加载，完成后执行初始化检查
+     * 重复调用时返回同一个进行中或已成功的Future
+     */
+    public synchronized CompletableFuture<Boolean> initializeAsync() {
+        if (initFuture != null && !(initFuture.isDone() && !initFuture.join())) {
+            Log.d(TAG, modelState != null ? "模型服务已经初始化" : "模型服务正在初始化");
+            return initFuture;
         }
         
         Log.d(TAG, "开始初始化模型服务...");
         
         // 重置状态
-        isInitialized = false;
+        initTimings.clear();
         
         // 检查上下文
         if (context == null) {
             Log.e(TAG, "初始化失败：上下文为空");
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
         
-        try {
-            // 检查模型文件是否存在
-            AssetManager assetManager = context.getAssets();
-            checkFileExists(assetManager, MODEL_PATH);
-            checkFileExists(assetManager, WORD2IDX_PATH);
-            
-            // 1. 加载词表
-            Log.d(TAG, "步骤1: 开始加载词表...");
-            loadWord2idx();
-            Log.d(TAG, "步骤1: 词表加载成功，大小: " + word2idx.size());
-            
-            // 2. 初始化Jieba分词器
-            Log.d(TAG, "步骤2: 开始初始化Jieba分词器...");
-            
-            // 用户需求：严格使用Jieba分词器，不使用降级处理
-            // 初始化失败直接抛出异常，停止模型服务加载
-            jiebaSegmenter = new JiebaSegmenter();
-            
-            Log.d(TAG, "步骤2: Jieba分词器初始化成功");
-            
-            // 3. 初始化ONNX Runtime环境
-            Log.d(TAG, "步骤3: 开始初始化ONNX Runtime环境...");
-            ortEnvironment = OrtEnvironment.getEnvironment();
-            Log.d(TAG, "步骤3: ONNX Runtime环境初始化成功");
-            
-            // 4. 加载ONNX模型
-            Log.d(TAG, "步骤4: 开始加载ONNX模型...");
-            InputStream modelInputStream = assetManager.open(MODEL_PATH);
-            // 将InputStream转换为byte数组，因为ONNX Runtime v1.23.2不支持直接从InputStream创建Session
-            byte[] modelBytes = new byte[modelInputStream.available()];
-            int bytesRead = modelInputStream.read(modelBytes);
-            modelInputStream.close();
-            Log.d(TAG, "步骤4: 模型文件读取完成，大小: " + bytesRead + " 字节");
-            
-            Log.d(TAG, "步骤4: 开始创建ONNX Session...");
-            ortSession = ortEnvironment.createSession(modelBytes);
-            Log.d(TAG, "步骤4: ONNX Session创建成功");
-            
-            // 5. 先将isInitialized设为true，因为performInitializationCheck()会调用predict()方法
-            isInitialized = true;
-            
-            // 6. 执行初始化检查
-            Log.d(TAG, "步骤5: 开始执行初始化检查...");
-            boolean checkResult = performInitializationCheck();
-            
+        final int generation = initGeneration;
+        final long initStartTime = System.currentTimeMillis();
+        final InferenceConfig config = resolveInferenceConfig();
+        activeConfig = config;
+        Log.d(TAG, "使用推理配置: " + config);
+        final AssetManager assetManager = context.getAssets();
+        final ExecutorService initExecutor = Executors.newFixedThreadPool(3);
+        
+        // 1. 加载词表
+        CompletableFuture<VocabIndex> vocabFuture = CompletableFuture.supplyAsync(() -> {
+            long startTime = System.currentTimeMillis();
+            try {
+                checkFileExists(assetManager, WORD2IDX_PATH);
+                VocabIndex vocab = loadWord2idx(assetManager);
+                recordInitTiming("vocab", startTime);
+                return vocab;
+            } catch (IOException | JSONException e) {
+                throw new CompletionException("词表加载失败: " + e.getMessage(), e);
+            }
+        }, initExecutor);
+        
+        // 2. 初始化Jieba分词器
+        // 用户需求：严格使用Jieba分词器，不使用降级处理
+        // 初始化失败直接抛出异常，停止模型服务加载
+        CompletableFuture<JiebaSegmenter> jiebaFuture = CompletableFuture.supplyAsync(() -> {
+            long startTime = System.currentTimeMillis();
+            JiebaSegmenter segmenter = new JiebaSegmenter();
+            recordInitTiming("jieba", startTime);
+            return segmenter;
+        }, initExecutor);
+        
+        // 3. 初始化ONNX Runtime环境并加载ONNX模型
+        CompletableFuture<OrtSession> sessionFuture = CompletableFuture.supplyAsync(() -> {
+            long startTime = System.currentTimeMillis();
+            try {
+                checkFileExists(assetManager, MODEL_PATH);
+                ortEnvironment = OrtEnvironment.getEnvironment();
+                recordInitTiming("ortEnvironment", startTime);
+                
+                startTime = System.currentTimeMillis();
+                OrtSession session = createModelSession(assetManager, config);
+                recordInitTiming("session", startTime);
+                return session;
+            } catch (IOException | OrtException e) {
+                throw new CompletionException("ONNX模型加载失败: " + e.getMessage(), e);
+            }
+        }, initExecutor);
+        
+        // 4. 全部完成后执行初始化检查
+        initFuture = CompletableFuture.allOf(vocabFuture, jiebaFuture, sessionFuture)
+                .thenApplyAsync(ignored -> finishInitialization(generation, config,
+                        vocabFuture.join(), jiebaFuture.join(), sessionFuture.join(), initStartTime), initExecutor)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    Log.e(TAG, "模型服务初始化失败: " + cause.getMessage(), cause);
+                    synchronized (this) {
+                        // 已经创建但尚未发布的Session需要单独释放
+                        OrtSession session = sessionFuture.isCompletedExceptionally() ? null : sessionFuture.getNow(null);
+                        ModelState published = modelState;
+                        if (published == null || published.session != session) {
+                            closeQuietly(session);
+                        }
+                        if (generation == initGeneration) {
+                            cleanup();
+                        }
+                    }
+                    return false;
+                });
+        initFuture.whenComplete((success, e) -> initExecutor.shutdown());
+        return initFuture;
+    }
+    
+    /**
+     * 执行初始化检查并发布并行加载的结果
+     * 检查要跑完整的推理，不持有服务锁执行，避免期间initializeAsync和cleanup（在主线程调用）被阻塞；
+     * 只在比较初始化代数和发布模型状态时加锁
+     */
+    private boolean finishInitialization(int generation, InferenceConfig config, VocabIndex vocab, JiebaSegmenter segmenter,
+                                         OrtSession session, long initStartTime) {
+        // 初始化过程中调用了cleanup，丢弃本次结果
+        synchronized (this) {
+            if (generation != initGeneration) {
+                Log.w(TAG, "初始化期间模型服务已被释放，丢弃初始化结果");
+                closeQuietly(session);
+                return false;
+            }
+        }
+        
+        PreFilter preFilter = null;
+        if (config.preFilterEnabled) {
+            try (InputStream inputStream = context.getAssets().open(PREFILTER_WEIGHTS_PATH)) {
+                preFilter = PreFilter.load(inputStream, vocab, config.preFilterPassThreshold);
+            } catch (IOException e) {
+                Log.w(TAG, "预筛选权重加载失败，所有文本都交给模型推理: " + e.getMessage());
+            }
+        }
+        // 检查期间固定长度填充、整段分词，检查通过后再按校验结果确定分桶和分句设置
+        ModelState candidate = new ModelState(vocab, segmenter, session, config.tokenizer, preFilter,
+                FIXED_SEQ_LEN_BUCKETS, false);
+        Log.d(TAG, "词表、Jieba分词器和ONNX Session加载完成，词表大小: " + vocab.size());
+        
+        // 执行初始化检查，通过后再发布模型状态
+        Log.d(TAG, "开始执行初始化检查...");
+        long checkStartTime = System.currentTimeMillis();
+        boolean checkResult = performInitializationCheck(candidate);
+        // 分桶填充需要模型支持动态序列长度，且在各分桶边界上与固定长度填充结果一致，不一致的分桶不使用
+        int[] seqLenBuckets = checkResult && config.lengthBucketing
+                ? checkBucketParity(candidate) : FIXED_SEQ_LEN_BUCKETS;
+        // 按句切分会改变Jieba的切分结果，默认关闭；配置开启时在语料上与整段分词比对，一致才启用
+        boolean sentenceSplitting = checkResult && config.sentenceSplitting
+                && candidate.tokenizer == InferenceConfig.Tokenizer.JIEBA
+                && checkSentenceSplitting(candidate);
+        recordInitTiming("check", checkStartTime);
+        ModelState model = new ModelState(candidate, seqLenBuckets, sentenceSplitting);
+        
+        synchronized (this) {
+            // 检查期间调用了cleanup或重新开始了初始化，本次结果作废
+            if (generation != initGeneration) {
+                Log.w(TAG, "初始化期间模型服务已被释放，丢弃初始化结果");
+                model.release();
+                return false;
+            }
             if (!checkResult) {
-                Log.e(TAG, "步骤5: 模型服务初始化检查失败");
-                isInitialized = false;
+                Log.e(TAG, "模型服务初始化检查失败");
+                model.release();
                 cleanup();
-            } else {
-                Log.d(TAG, "步骤5: 模型服务初始化检查成功");
-                Log.d(TAG, "模型服务初始化成功完成");
+                return false;
             }
             
-            return isInitialized;
-            
-        } catch (IOException e) {
-            Log.e(TAG, "模型服务初始化失败 - IO异常: " + e.getMessage(), e);
-            cleanup();
-            return false;
-        } catch (JSONException e) {
-            Log.e(TAG, "模型服务初始化失败 - JSON异常: " + e.getMessage(), e);
-            cleanup();
-            return false;
+            // 模型或配置可能已变化，之前缓存的结果不再可信
+            resultCache.clear();
+            segmentationCache.clear();
+            modelState = model;
+        }
+        recordInitTiming("total", initStartTime);
+        Log.d(TAG, "模型服务初始化成功完成，各阶段耗时(ms): " + initTimings);
+        return true;
+    }
+    
+    private void recordInitTiming(String stage, long startTime) {
+        long elapsed = System.currentTimeMillis() - startTime;
+        initTimings.put(stage, elapsed);
+        Log.d(TAG, "初始化阶段 " + stage + " 完成，耗时: " + elapsed + "ms");
+    }
+    
+    /**
+     * 获取推理结果缓存的命中、未命中和淘汰统计
+     */
+    public Map<String, Object> getResultCacheStats() {
+        return resultCache.getStats();
+    }
+    
+    /**
+     * 获取分句分词缓存的命中、未命中和淘汰统计
+     */
+    public Map<String, Object> getSegmentationCacheStats() {
+        return segmentationCache.getStats();
+    }
+    
+    /**
+     * 清空推理结果缓存和分句分词缓存
+     */
+    public void clearCaches() {
+        resultCache.clear();
+        segmentationCache.clear();
+    }
+    
+    /**
+     * 获取热路径指标，以及结果缓存、分句分词缓存、预筛选的统计、当前可用的填充长度分桶和流式会话数
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = Metrics.snapshot();
+        metrics.putAll(getComponentStats());
+        return metrics;
+    }
+    
+    /**
+     * 把当前指标导出为JSON文件
+     * @return 导出文件的绝对路径
+     */
+    public String dumpMetrics() throws IOException {
+        File directory = new File(context.getFilesDir(), METRICS_DIR);
+        return Metrics.dumpTo(directory, getComponentStats()).getAbsolutePath();
+    }
+    
+    private Map<String, Object> getComponentStats() {
+        Map<String, Object> caches = new HashMap<>();
+        caches.put("result", getResultCacheStats());
+        caches.put("segmentation", getSegmentationCacheStats());
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("caches", caches);
+        stats.put("preFilter", getPreFilterStats());
+        stats.put("seqLenBuckets", getSeqLenBuckets());
+        stats.put("openStreams", streams.size());
+        return stats;
+    }
+    
+    /**
+     * 获取最近一次初始化各阶段耗时（毫秒）
+     */
+    public Map<String, Long> getInitTimings() {
+        return new HashMap<>(initTimings);
+    }
+    
+    private void closeQuietly(OrtSession session) {
+        if (session == null) {
+            return;
+        }
+        try {
+            session.close();
         } catch (Exception e) {
-            Log.e(TAG, "模型服务初始化失败: " + e.getMessage(), e);
-            cleanup();
-            return false;
+            Log.e(TAG, "释放Session失败: " + e.getMessage());
         }
     }
     
@@ -166,10 +414,20 @@ public class FraudDetectionService {
     /**
      * 加载词表
      */
-    private void loadWord2idx() throws IOException, JSONException {
+    private VocabIndex loadWord2idx(AssetManager assetManager) throws IOException, JSONException {
         Log.d(TAG, "开始加载词表...");
         
-        AssetManager assetManager = context.getAssets();
+        // 优先内存映射预编译的二进制词表，缺失或损坏时回退到JSON
+        try {
+            VocabIndex vocab = loadWord2idxBinary(assetManager);
+            Log.d(TAG, "二进制词表加载成功，词表大小: " + vocab.size() + ", 占用内存约: " + vocab.estimatedMemoryBytes() / 1024 + "KB");
+            return vocab;
+        } catch (FileNotFoundException e) {
+            Log.w(TAG, "二进制词表不存在，回退到JSON词表");
+        } catch (IOException e) {
+            Log.w(TAG, "二进制词表读取失败，回退到JSON词表: " + e.getMessage());
+        }
+        
         InputStream inputStream = assetManager.open(WORD2IDX_PATH);
         BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
         
@@ -181,275 +439,1946 @@ public class FraudDetectionService {
         reader.close();
         
         JSONObject jsonObject = new JSONObject(jsonContent.toString());
-        word2idx = new HashMap<>();
+        VocabIndex vocab = new VocabIndex(jsonObject.length());
         
         // 使用Iterator遍历JSONObject，兼容所有Android版本
         Iterator<String> keys = jsonObject.keys();
         while (keys.hasNext()) {
             String key = keys.next();
             int value = jsonObject.getInt(key);
-            word2idx.put(key, value);
+            vocab.put(key, value);
         }
         
-        Log.d(TAG, "词表加载成功，词表大小: " + word2idx.size());
+        Log.d(TAG, "词表加载成功，词表大小: " + vocab.size() + ", 占用内存约: " + vocab.estimatedMemoryBytes() / 1024 + "KB");
+        return vocab;
     }
     
     /**
-     * 执行初始化检查
+     * 通过内存映射加载二进制词表
      */
-    private boolean performInitializationCheck() {
+    private VocabIndex loadWord2idxBinary(AssetManager assetManager) throws IOException {
+        return VocabIndex.fromBinary(mapAsset(assetManager, WORD2IDX_BINARY_PATH));
+    }
+    
+    /**
+     * 内存映射APK中不压缩存放的asset文件，文件被压缩或不存在时抛出FileNotFoundException
+     */
+    private MappedByteBuffer mapAsset(AssetManager assetManager, String fileName) throws IOException {
+        try (AssetFileDescriptor fileDescriptor = assetManager.openFd(fileName);
+             FileInputStream inputStream = fileDescriptor.createInputStream();
+             FileChannel channel = inputStream.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY,
+                    fileDescriptor.getStartOffset(), fileDescriptor.getLength());
+        }
+    }
+    
+    /**
+     * 创建ONNX Session：优先直接内存映射APK中的模型，避免读入堆内存；
+     * 模型被压缩时解压到应用私有目录，之后按文件路径加载。
+     * 首次加载时把图优化后的模型写到应用私有目录，之后直接加载优化结果，跳过图优化
+     */
+    private OrtSession createModelSession(AssetManager assetManager, InferenceConfig config) throws IOException, OrtException {
+        MappedByteBuffer modelBuffer = null;
+        File modelFile = null;
+        String modelChecksum;
         try {
-            Log.d(TAG, "开始执行初始化检查...");
-            
-            // 使用测试文本进行推理
-            String testText = "A: 孙先生，根据您上次在社区健康讲座上的登记，我们发现您对改善睡眠和心脑健康特别关注，正好今天有一批日本进口的深海鱼油软胶囊到货，功效提升30%…B: 我什么时候登记过？我没去过什么讲座。A: 诶，您别急着否认！可能是家人代您登记的。而且系统显示您近期的体检报告中，微量元素硒含量偏低，这可关乎免疫力！我们这款德国富硒酵母片就是专门针对这种状况的B: 什么系统？我没做过那种检查。免疫力挺好的。A: 方女士，健康数据是不会骗人的！现在忽视骨骼健康，将来受罪的可是自己。我们特别为像您这样有远见的客户准备了限量版的纳米高钙片，比普通钙片吸收快五倍…B: 限量版？听起来像是在清库存。A: 刘主任，您看您说笑了！我们这可是高科技产品，市场需求量大得很！不过今天，只要您订购一个疗程的高钙片，就能免费获赠一瓶市价千元的澳洲进口辅酶Q10，这可是心脏的保护神！B: 免费送？那岂不是把高钙片的钱算进去了。A: 杜先生，这账可不能这么算！健康是无价的！您想想，有多少人因为肠胃不适吃不下睡不好？我们这款复合益生菌固体饮料，能有效调节肠道菌群，改善消化吸收，让您浑身舒畅…B: 我平时吃得挺好的，没什么不舒服。";
-            FraudResult result = predict(testText);
+            modelBuffer = mapAsset(assetManager, MODEL_PATH);
+            Log.d(TAG, "模型文件内存映射完成，大小: " + modelBuffer.capacity() + " 字节");
+            modelChecksum = sha256(modelBuffer);
+        } catch (FileNotFoundException e) {
+            Log.w(TAG, "模型文件被压缩存放，无法内存映射，改为从应用目录加载");
+            modelFile = extractModel(assetManager);
+            Log.d(TAG, "从文件加载模型: " + modelFile.getAbsolutePath() + ", 大小: " + modelFile.length() + " 字节");
+            modelChecksum = readChecksum(new File(modelFile.getPath() + ".sha256"));
+        }
+        
+        // 不做图优化时没有可缓存的结果；NNAPI、XNNPACK会把子图编译成无法序列化的节点，只缓存CPU的优化结果
+        File optimizedFile = config.optimizationLevel != OrtSession.SessionOptions.OptLevel.NO_OPT
+                && config.provider == InferenceConfig.Provider.CPU
+                ? optimizedModelFile(modelChecksum, config) : null;
+        if (optimizedFile != null && optimizedFile.isFile()) {
+            try (OrtSession.SessionOptions sessionOptions = new OrtSession.SessionOptions()) {
+                config.applyTo(sessionOptions);
+                // 缓存的模型已经是优化后的图，不再重复执行图优化
+                sessionOptions.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.NO_OPT);
+                OrtSession session = ortEnvironment.createSession(optimizedFile.getAbsolutePath(), sessionOptions);
+                Log.d(TAG, "加载已缓存的优化模型: " + optimizedFile.getName());
+                return session;
+            } catch (OrtException e) {
+                Log.w(TAG, "缓存的优化模型无法加载，删除后重新优化: " + e.getMessage());
+                optimizedFile.delete();
+            }
+        }
+        
+        try (OrtSession.SessionOptions sessionOptions = new OrtSession.SessionOptions()) {
+            config.applyTo(sessionOptions);
+            File tempFile = null;
+            if (optimizedFile != null) {
+                // 先写临时文件，Session创建成功后再原子替换，避免中途失败留下不完整的模型
+                tempFile = new File(optimizedFile.getPath() + ".tmp");
+                sessionOptions.setOptimizedModelFilePath(tempFile.getAbsolutePath());
+            }
             
-            Log.d(TAG, "初始化检查完成，测试结果: " + result.toString());
-            return true;
+            OrtSession session = modelBuffer != null
+                    ? ortEnvironment.createSession(modelBuffer, sessionOptions)
+                    : ortEnvironment.createSession(modelFile.getAbsolutePath(), sessionOptions);
             
-        } catch (Exception e) {
-            Log.e(TAG, "初始化检查失败: " + e.getMessage(), e);
-            return false;
+            if (tempFile != null) {
+                if (tempFile.isFile() && tempFile.renameTo(optimizedFile)) {
+                    Log.d(TAG, "优化后的模型已缓存: " + optimizedFile.getName() + ", 大小: " + optimizedFile.length() + " 字节");
+                } else {
+                    tempFile.delete();
+                    Log.w(TAG, "优化后的模型缓存写入失败");
+                }
+            }
+            return session;
         }
     }
     
     /**
-     * 文本预处理
+     * 优化模型的缓存文件，以模型校验和、ONNX Runtime版本和图优化级别区分；
+     * 同时删除模型或ONNX Runtime版本已变化的旧缓存
      */
-    private PreprocessedText preprocessText(String text) {
-        // 处理空值
-        if (text == null || text.isEmpty()) {
-            text = "";
+    private File optimizedModelFile(String modelChecksum, InferenceConfig config) throws IOException {
+        File cacheDir = new File(new File(context.getFilesDir(), MODEL_CACHE_DIR), OPTIMIZED_MODEL_DIR);
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            throw new IOException("无法创建优化模型目录: " + cacheDir);
         }
         
-        // 分词
-        List<String> wordList;
-        
-        // 用户需求：严格使用Jieba分词器，不使用降级处理
-        // 直接调用Jieba分词器，异常会直接抛出
-        wordList = jiebaSegmenter.sentenceProcess(text.trim());
+        String prefix = modelChecksum.substring(0, 16) + "_ort" + OrtEnvironment.getEnvironment().getVersion() + "_";
+        File[] cachedFiles = cacheDir.listFiles();
+        if (cachedFiles != null) {
+            for (File cachedFile : cachedFiles) {
+                if (!cachedFile.getName().startsWith(prefix)) {
+                    Log.d(TAG, "删除过期的优化模型缓存: " + cachedFile.getName());
+                    cachedFile.delete();
+                }
+            }
+        }
+        return new File(cacheDir, prefix + config.optimizationLevel.name() + ".onnx");
+    }
+    
+    /**
+     * 将模型解压到应用私有目录，已存在且校验和与asset一致时直接复用
+     */
+    private File extractModel(AssetManager assetManager) throws IOException {
+        File modelDir = new File(context.getFilesDir(), MODEL_CACHE_DIR);
+        if (!modelDir.isDirectory() && !modelDir.mkdirs()) {
+            throw new IOException("无法创建模型目录: " + modelDir);
+        }
+        File modelFile = new File(modelDir, MODEL_PATH);
+        File checksumFile = new File(modelDir, MODEL_PATH + ".sha256");
         
-        // 词转索引
-        List<Integer> wordIndices = new ArrayList<>();
-        for (String word : wordList) {
-            Integer idx = word2idx.get(word);
-            wordIndices.add(idx != null ? idx : UNK_IDX);
+        String assetChecksum;
+        try (InputStream inputStream = assetManager.open(MODEL_PATH)) {
+            assetChecksum = sha256(inputStream, null);
         }
         
-        // 截断/填充
-        int seqLen = wordIndices.size();
-        if (seqLen > MAX_SEQ_LEN) {
-            wordIndices = wordIndices.subList(0, MAX_SEQ_LEN);
-            seqLen = MAX_SEQ_LEN;
-        } else {
-            int paddingLen = MAX_SEQ_LEN - seqLen;
-            for (int i = 0; i < paddingLen; i++) {
-                wordIndices.add(PAD_IDX);
+        if (modelFile.isFile() && checksumFile.isFile()) {
+            String cachedChecksum = readChecksum(checksumFile);
+            if (assetChecksum.equals(cachedChecksum)) {
+                Log.d(TAG, "复用已解压的模型文件，校验和: " + assetChecksum);
+                return modelFile;
             }
+            Log.d(TAG, "模型文件已变化，重新解压");
         }
         
-        // 转换为long数组
-        long[] wordIndicesArray = new long[wordIndices.size()];
-        for (int i = 0; i < wordIndices.size(); i++) {
-            wordIndicesArray[i] = wordIndices.get(i);
+        // 先写临时文件并校验，再原子替换，避免中途失败留下损坏的模型
+        File tempFile = new File(modelDir, MODEL_PATH + ".tmp");
+        String extractedChecksum;
+        try (InputStream inputStream = assetManager.open(MODEL_PATH);
+             OutputStream outputStream = new FileOutputStream(tempFile)) {
+            extractedChecksum = sha256(inputStream, outputStream);
         }
-        
-        return new PreprocessedText(wordIndicesArray, seqLen);
+        if (!assetChecksum.equals(extractedChecksum)) {
+            tempFile.delete();
+            throw new IOException("模型文件解压校验失败");
+        }
+        if (!tempFile.renameTo(modelFile)) {
+            tempFile.delete();
+            throw new IOException("无法写入模型文件: " + modelFile);
+        }
+        Files.write(checksumFile.toPath(), assetChecksum.getBytes(StandardCharsets.UTF_8));
+        Log.d(TAG, "模型文件解压完成，校验和: " + assetChecksum);
+        return modelFile;
     }
     
     /**
-     * 模型推理
+     * 计算缓冲区剩余内容的SHA-256，不改变缓冲区位置
      */
-    public synchronized FraudResult predict(String text) {
-        if (!isInitialized) {
-            throw new IllegalStateException("模型服务尚未初始化");
+    private static String sha256(ByteBuffer buffer) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256不可用", e);
         }
-        
-        // 添加输入检查
-        if (text == null || text.isEmpty()) {
-            return new FraudResult(0, 1.0f, 1.0f, 0.0f); // 返回正常结果
+        digest.update(buffer.duplicate());
+        return toHex(digest.digest());
+    }
+    
+    private static String readChecksum(File checksumFile) throws IOException {
+        return new String(Files.readAllBytes(checksumFile.toPath()), StandardCharsets.UTF_8).trim();
+    }
+    
+    /**
+     * 计算输入流的SHA-256，outputStream不为空时同时写出数据
+     */
+    private static String sha256(InputStream inputStream, OutputStream outputStream) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256不可用", e);
         }
-        
-        Log.d(TAG, "开始模型推理，输入文本长度: " + text.length());
-        
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+            if (outputStream != null) {
+                outputStream.write(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+    
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+    
+    /**
+     * 执行初始化检查
+     */
+    private boolean performInitializationCheck(ModelState model) {
         try {
-            // 文本预处理
-            PreprocessedText preprocessedText = preprocessText(text);
-            Log.d(TAG, "文本预处理完成，序列长度: " + preprocessedText.seqLen);
-            
-            // 准备输入张量
-            long[] wordIndices = preprocessedText.wordIndices;
-            long[] seqLens = {preprocessedText.seqLen};
+            Log.d(TAG, "开始执行初始化检查...");
             
-            // 检查张量数据
-            Log.d(TAG, "创建输入张量，wordIndices长度: " + wordIndices.length + ", seqLens: " + seqLens[0]);
+            // 使用测试文本进行推理
+            FraudResult result = predict(model, INIT_CHECK_TEXT, false);
             
-            // 创建输入张量
-            OnnxTensor wordIndicesTensor = null;
-            OnnxTensor seqLensTensor = null;
-            OrtSession.Result results = null;
+            Log.d(TAG, "初始化检查完成，测试结果: " + result.toString());
+            return true;
             
-            try {
-                // 使用安全方式创建张量
-                wordIndicesTensor = OnnxTensor.createTensor(ortEnvironment, LongBuffer.wrap(wordIndices), new long[]{1, MAX_SEQ_LEN});
-                seqLensTensor = OnnxTensor.createTensor(ortEnvironment, LongBuffer.wrap(seqLens), new long[]{1});
-                
-                Log.d(TAG, "输入张量创建成功");
-                
-                // 构建输入映射
-                Map<String, OnnxTensor> inputMap = new HashMap<>();
-                inputMap.put("word_indices", wordIndicesTensor);
-                inputMap.put("seq_lens", seqLensTensor);
-                
-                Log.d(TAG, "输入映射构建完成，准备执行推理");
-                
-                // 执行推理
-                results = ortSession.run(inputMap);
-                
-                Log.d(TAG, "推理执行完成，输出数量: " + results.size());
-                
-                // 处理输出
-                if (results.size() > 0) {
-                    Log.d(TAG, "获取输出张量");
-                    float[][] logits = (float[][]) results.get(0).getValue();
-                    
-                    // 计算softmax概率
-                    float[] probs = softmax(logits[0]);
-                    
-                    // 确定预测标签
-                    int predLabel = probs[1] > probs[0] ? 1 : 0;
-                    float predProb = probs[predLabel];
-                    
-                    Log.d(TAG, "推理结果处理完成，预测标签: " + predLabel + ", 概率: " + predProb);
-                    
-                    // 返回结果
-                    return new FraudResult(predLabel, predProb, probs[0], probs[1]);
-                } else {
-                    Log.e(TAG, "推理结果为空");
-                    return new FraudResult(0, 0.5f, 0.5f, 0.5f); // 返回中立结果
-                }
-            } finally {
-                // 安全释放资源
-                if (wordIndicesTensor != null) {
-                    try {
-                        wordIndicesTensor.close();
-                    } catch (Exception e) {
-                        Log.e(TAG, "释放wordIndicesTensor失败: " + e.getMessage());
-                    }
-                }
-                if (seqLensTensor != null) {
-                    try {
-                        seqLensTensor.close();
-                    } catch (Exception e) {
-                        Log.e(TAG, "释放seqLensTensor失败: " + e.getMessage());
-                    }
-                }
-                if (results != null) {
-                    try {
-                        results.close();
-                    } catch (Exception e) {
-                        Log.e(TAG, "释放results失败: " + e.getMessage());
-                    }
-                }
-            }
-        } catch (OrtException e) {
-            Log.e(TAG, "ONNX Runtime异常: " + e.getMessage(), e);
-            throw new RuntimeException("ONNX Runtime推理失败: " + e.getMessage(), e);
         } catch (Exception e) {
-            Log.e(TAG, "模型推理失败，非ONNX异常: " + e.getMessage(), e);
-            throw new RuntimeException("模型推理失败: " + e.getMessage(), e);
+            Log.e(TAG, "初始化检查失败: " + e.getMessage(), e);
+            return false;
         }
     }
     
     /**
-     * Softmax计算
+     * 在分桶边界上校验分桶填充与固定长度填充的推理结果：每个分桶分别用长度为1、上一个可用分桶+1和分桶长度的输入
+     * 比对两种填充的诈骗概率，超出容差的分桶不使用，落在其中的输入改为填充到下一个可用分桶
+     * @return 可用的分桶，最后一档总是MAX_SEQ_LEN
      */
-    private float[] softmax(float[] logits) {
-        float[] expLogits = new float[logits.length];
-        float maxLogit = logits[0];
-        
-        // 找到最大值（数值稳定）
-        for (float logit : logits) {
-            if (logit > maxLogit) {
-                maxLogit = logit;
+    private int[] checkBucketParity(ModelState model) {
+        List<Integer> buckets = new ArrayList<>();
+        try {
+            long[] baseTokens = new long[MAX_SEQ_LEN];
+            int baseCount = tokenizeInto(model, INIT_CHECK_TEXT, baseTokens, false);
+            int previous = 0;
+            for (int bucket : SEQ_LEN_BUCKETS) {
+                if (bucket == MAX_SEQ_LEN) {
+                    break;
+                }
+                float maxDiff = 0f;
+                for (int length : new int[]{1, previous + 1, bucket}) {
+                    maxDiff = Math.max(maxDiff, bucketProbDiff(model, baseTokens, baseCount, length, bucket));
+                }
+                if (maxDiff <= BUCKET_PARITY_TOLERANCE) {
+                    buckets.add(bucket);
+                    previous = bucket;
+                    Log.d(TAG, "分桶校验通过: 桶长度 " + bucket + ", 最大概率差 " + maxDiff);
+                } else {
+                    Log.w(TAG, "分桶填充结果与固定长度不一致，不使用该分桶: 桶长度 " + bucket + ", 最大概率差 " + maxDiff);
+                }
             }
+        } catch (Exception e) {
+            Log.w(TAG, "模型不支持动态序列长度，回退到固定长度填充: " + e.getMessage());
+            buckets.clear();
         }
         
-        // 计算指数
-        float sumExp = 0.0f;
-        for (int i = 0; i < logits.length; i++) {
-            expLogits[i] = (float) Math.exp(logits[i] - maxLogit);
-            sumExp += expLogits[i];
+        int[] result = new int[buckets.size() + 1];
+        for (int i = 0; i < buckets.size(); i++) {
+            result[i] = buckets.get(i);
         }
-        
-        // 计算概率
-        float[] probs = new float[logits.length];
-        for (int i = 0; i < logits.length; i++) {
-            probs[i] = expLogits[i] / sumExp;
+        result[buckets.size()] = MAX_SEQ_LEN;
+        return result;
+    }
+    
+    /**
+     * 循环取baseTokens前baseCount个词组成length个词的输入，分别填充到seqDim和MAX_SEQ_LEN推理，返回诈骗概率之差
+     */
+    private float bucketProbDiff(ModelState model, long[] baseTokens, int baseCount, int length, int seqDim) throws OrtException {
+        long[] fixed = bucketCheckInput(baseTokens, baseCount, length, MAX_SEQ_LEN);
+        long[] bucketed = Arrays.copyOf(fixed, seqDim);
+        long[] seqLens = {length};
+        float bucketedProb = toFraudResult(runInference(model, bucketed, seqLens, 1, seqDim)[0]).fraudProb;
+        float fixedProb = toFraudResult(runInference(model, fixed, seqLens, 1, MAX_SEQ_LEN)[0]).fraudProb;
+        return Math.abs(bucketedProb - fixedProb);
+    }
+    
+    private static long[] bucketCheckInput(long[] baseTokens, int baseCount, int length, int seqDim) {
+        long[] input = new long[seqDim];
+        Arrays.fill(input, PAD_IDX);
+        for (int i = 0; i < length; i++) {
+            input[i] = baseCount > 0 ? baseTokens[i % baseCount] : UNK_IDX;
         }
-        
-        return probs;
+        return input;
     }
     
     /**
-     * 释放资源
+     * 分桶延迟基准测试：对每个分桶用恰好填满该分桶的输入，分别测量按分桶长度和按MAX_SEQ_LEN填充的单条推理平均延迟，
+     * 同时返回两种填充的诈骗概率差以及该分桶是否通过了初始化时的一致性校验
      */
-    public synchronized void cleanup() {
+    public Map<String, Object> benchmarkBuckets(int iterations) throws OrtException {
+        ModelState model = acquireModel();
         try {
-            if (ortSession != null) {
-                ortSession.close();
-                ortSession = null;
-            }
+            long[] baseTokens = new long[MAX_SEQ_LEN];
+            int baseCount = tokenizeInto(model, INIT_CHECK_TEXT, baseTokens, false);
+            int runs = Math.max(1, iterations);
             
-            if (ortEnvironment != null) {
-                ortEnvironment.close();
-                ortEnvironment = null;
+            Map<String, Object> report = new HashMap<>();
+            List<Integer> enabled = new ArrayList<>();
+            for (int bucket : model.seqLenBuckets) {
+                enabled.add(bucket);
             }
-            
-            isInitialized = false;
-            Log.d(TAG, "模型服务资源已释放");
-        } catch (OrtException e) {
-            Log.e(TAG, "释放资源失败: " + e.getMessage(), e);
+            report.put("enabledBuckets", enabled);
+            for (int bucket : SEQ_LEN_BUCKETS) {
+                long[] fixed = bucketCheckInput(baseTokens, baseCount, bucket, MAX_SEQ_LEN);
+                long[] bucketed = Arrays.copyOf(fixed, bucket);
+                long[] seqLens = {bucket};
+                
+                // 预热，避免首次使用该形状时的内存分配计入结果
+                float bucketedProb = toFraudResult(runInference(model, bucketed, seqLens, 1, bucket)[0]).fraudProb;
+                float fixedProb = toFraudResult(runInference(model, fixed, seqLens, 1, MAX_SEQ_LEN)[0]).fraudProb;
+                
+                long startTime = System.nanoTime();
+                for (int i = 0; i < runs; i++) {
+                    runInference(model, bucketed, seqLens, 1, bucket);
+                }
+                double bucketMs = (System.nanoTime() - startTime) / 1e6 / runs;
+                startTime = System.nanoTime();
+                for (int i = 0; i < runs; i++) {
+                    runInference(model, fixed, seqLens, 1, MAX_SEQ_LEN);
+                }
+                double fixedMs = (System.nanoTime() - startTime) / 1e6 / runs;
+                
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("bucketLatencyMs", bucketMs);
+                entry.put("fixedLatencyMs", fixedMs);
+                entry.put("speedup", bucketMs > 0 ? fixedMs / bucketMs : 0.0);
+                entry.put("probDiff", Math.abs(bucketedProb - fixedProb));
+                entry.put("enabled", enabled.contains(bucket));
+                report.put("bucket_" + bucket, entry);
+                Log.d(TAG, "分桶延迟基准测试，桶长度: " + bucket + ", 结果: " + entry);
+            }
+            return report;
+        } finally {
+            model.release();
+        }
+    }
+    
+    /**
+     * 在语料（初始化测试文本和题库中含多个句子的文本）上比对按句切分与整段Jieba分词
+     * @return 预测标签一致率和平均概率差都达标时返回true，可以按句切分
+     */
+    private boolean checkSentenceSplitting(ModelState model) {
+        try {
+            Map<String, Object> report = compareSentenceSplitting(model, null);
+            Log.d(TAG, "分句分词校验: " + report);
+            if (!(Boolean) report.get("passed")) {
+                Log.w(TAG, "按句分词与整段分词的结果差异超出阈值，使用整段分词");
+                return false;
+            }
+            return true;
         } catch (Exception e) {
-            Log.e(TAG, "释放资源失败 - 其他异常: " + e.getMessage(), e);
+            Log.w(TAG, "分句分词校验失败，使用整段分词: " + e.getMessage());
+            return false;
         }
     }
     
     /**
-     * 获取初始化状态
+     * 在语料上评估按句切分与整段Jieba分词的差异，texts为null时使用初始化测试文本和题库语料；
+     * 当前模型是否按句切分不影响评估
      */
-    public boolean isInitialized() {
-        return isInitialized;
+    public Map<String, Object> evaluateSentenceSplitting(List<String> texts) throws IOException, JSONException, OrtException {
+        ModelState model = acquireModel();
+        try {
+            return compareSentenceSplitting(model, texts);
+        } finally {
+            model.release();
+        }
     }
     
     /**
-     * 预处理文本结果类
+     * 逐条比对按句切分与整段分词的词索引和预测结果，只统计至少含两个句子的文本（单句文本两种方式结果相同），
+     * 最多SENTENCE_SPLIT_CHECK_MAX_TEXTS条；返回逐词一致率、预测标签一致率、概率差和是否达到启用阈值
      */
-    private static class PreprocessedText {
-        long[] wordIndices;
-        int seqLen;
+    private Map<String, Object> compareSentenceSplitting(ModelState model, List<String> texts)
+            throws IOException, JSONException, OrtException {
+        if (model.tokenizer != InferenceConfig.Tokenizer.JIEBA) {
+            throw new IllegalStateException("按句切分只用于Jieba分词");
+        }
+        if (texts == null) {
+            texts = new ArrayList<>();
+            texts.add(INIT_CHECK_TEXT);
+            texts.addAll(loadQuestionBankCorpus(context.getAssets()));
+        }
         
-        PreprocessedText(long[] wordIndices, int seqLen) {
-            this.wordIndices = wordIndices;
-            this.seqLen = seqLen;
+        long[] splitIds = new long[MAX_SEQ_LEN];
+        long[] wholeIds = new long[MAX_SEQ_LEN];
+        int compared = 0;
+        long matchedTokens = 0;
+        long totalTokens = 0;
+        int labelMatches = 0;
+        double probDiffSum = 0;
+        double maxProbDiff = 0;
+        for (String text : texts) {
+            if (compared >= SENTENCE_SPLIT_CHECK_MAX_TEXTS) {
+                break;
+            }
+            String trimmed = text != null ? text.trim() : "";
+            if (!hasMultipleSentences(trimmed)) {
+                continue;
+            }
+            compared++;
+            
+            int splitLen = segmentSentencesInto(model, trimmed, splitIds, false);
+            int wholeLen = wholeTextTokenIdsInto(model, trimmed, wholeIds);
+            for (int i = 0; i < Math.min(splitLen, wholeLen); i++) {
+                if (splitIds[i] == wholeIds[i]) {
+                    matchedTokens++;
+                }
+            }
+            totalTokens += Math.max(splitLen, wholeLen);
+            
+            Arrays.fill(splitIds, splitLen, MAX_SEQ_LEN, PAD_IDX);
+            Arrays.fill(wholeIds, wholeLen, MAX_SEQ_LEN, PAD_IDX);
+            FraudResult splitResult = toFraudResult(runInference(model, splitIds, new long[]{splitLen}, 1, MAX_SEQ_LEN)[0]);
+            FraudResult wholeResult = toFraudResult(runInference(model, wholeIds, new long[]{wholeLen}, 1, MAX_SEQ_LEN)[0]);
+            if (splitResult.predLabel == wholeResult.predLabel) {
+                labelMatches++;
+            }
+            double probDiff = Math.abs(splitResult.fraudProb - wholeResult.fraudProb);
+            probDiffSum += probDiff;
+            maxProbDiff = Math.max(maxProbDiff, probDiff);
         }
+        
+        double labelAgreement = compared > 0 ? (double) labelMatches / compared : 0.0;
+        double meanProbDiff = compared > 0 ? probDiffSum / compared : 0.0;
+        Map<String, Object> report = new HashMap<>();
+        report.put("texts", compared);
+        report.put("tokenAgreement", totalTokens > 0 ? (double) matchedTokens / totalTokens : 1.0);
+        report.put("labelAgreement", labelAgreement);
+        report.put("meanProbDiff", meanProbDiff);
+        report.put("maxProbDiff", maxProbDiff);
+        report.put("passed", compared > 0 && labelAgreement >= SENTENCE_SPLIT_MIN_LABEL_AGREEMENT
+                && meanProbDiff <= SENTENCE_SPLIT_MAX_MEAN_PROB_DIFF);
+        return report;
     }
     
     /**
-     * 诈骗检测结果类
+     * 文本在末尾以外的位置含句末标点，即按句切分会得到至少两个句子
      */
-    public static class FraudResult {
+    private static boolean hasMultipleSentences(String text) {
+        for (int i = 0; i < text.length() - 1; i++) {
+            if (SENTENCE_DELIMITERS.indexOf(text.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 获取当前Jieba分词是否按句切分（通过了与整段分词的一致性校验）
+     */
+    public boolean isSentenceSplittingEnabled() {
+        ModelState model = modelState;
+        return model != null && model.sentenceSplitting;
+    }
+    
+    /**
+     * 获取模型可用分桶中不小于seqLen的最小分桶长度
+     */
+    private static int bucketLength(ModelState model, int seqLen) {
+        for (int bucket : model.seqLenBuckets) {
+            if (seqLen <= bucket) {
+                return bucket;
+            }
+        }
+        return MAX_SEQ_LEN;
+    }
+    
+    /**
+     * 获取当前是否启用长度分桶动态填充（配置开启且至少一个分桶通过了一致性校验）
+     */
+    public boolean isLengthBucketingEnabled() {
+        ModelState model = modelState;
+        return model != null && model.seqLenBuckets.length > 1;
+    }
+    
+    /**
+     * 获取当前可用的填充长度分桶，未初始化或固定长度填充时只有MAX_SEQ_LEN
+     */
+    public List<Integer> getSeqLenBuckets() {
+        ModelState model = modelState;
+        List<Integer> buckets = new ArrayList<>();
+        for (int bucket : model != null ? model.seqLenBuckets : FIXED_SEQ_LEN_BUCKETS) {
+            buckets.add(bucket);
+        }
+        return buckets;
+    }
+    
+    /**
+     * 设置推理配置，下次初始化时生效；传入null表示使用基准测试记录的最快配置或默认配置
+     */
+    public void setInferenceConfig(InferenceConfig config) {
+        this.requestedConfig = config;
+    }
+    
+    /**
+     * 获取最近一次初始化实际使用的推理配置
+     */
+    public InferenceConfig getInferenceConfig() {
+        return activeConfig;
+    }
+    
+    /**
+     * 确定本次初始化使用的配置：调用方指定的配置优先，其次是当前ONNX Runtime版本下记录的最快配置
+     */
+    private InferenceConfig resolveInferenceConfig() {
+        if (requestedConfig != null) {
+            return requestedConfig;
+        }
+        File configFile = new File(new File(context.getFilesDir(), MODEL_CACHE_DIR), BEST_CONFIG_FILE);
+        if (!configFile.isFile()) {
+            return InferenceConfig.defaults();
+        }
+        try {
+            JSONObject record = new JSONObject(new String(Files.readAllBytes(configFile.toPath()), StandardCharsets.UTF_8));
+            if (!OrtEnvironment.getEnvironment().getVersion().equals(record.optString("ortVersion"))) {
+                Log.d(TAG, "ONNX Runtime版本已变化，忽略记录的推理配置");
+                return InferenceConfig.defaults();
+            }
+            return InferenceConfig.fromJson(record.getJSONObject("config").toString());
+        } catch (IOException | JSONException | IllegalArgumentException e) {
+            Log.w(TAG, "读取记录的推理配置失败，使用默认配置: " + e.getMessage());
+            return InferenceConfig.defaults();
+        }
+    }
+    
+    /**
+     * 推理配置基准测试：在当前设备上依次用不同的线程数、图优化级别和执行提供程序创建Session，
+     * 测量Session创建耗时和单条推理平均延迟，将最快的配置记录到应用私有目录，下次初始化时使用
+     */
+    public Map<String, Object> benchmarkConfigurations(String text, int iterations) throws IOException, OrtException, JSONException {
+        ModelState model = acquireModel();
+        try {
+            AssetManager assetManager = context.getAssets();
+            List<Map<String, Object>> entries = new ArrayList<>();
+            InferenceConfig bestConfig = null;
+            double bestLatencyMs = Double.MAX_VALUE;
+            
+            for (InferenceConfig candidate : buildBenchmarkCandidates()) {
+                long startTime = System.nanoTime();
+                OrtSession session;
+                try {
+                    session = createModelSession(assetManager, candidate);
+                } catch (OrtException e) {
+                    Log.w(TAG, "配置无法创建Session，跳过: " + candidate + ", " + e.getMessage());
+                    continue;
+                }
+                long createNanos = System.nanoTime() - startTime;
+                
+                ModelState candidateModel = new ModelState(model.word2idx, model.segmenter, session, model.tokenizer, null,
+                        model.seqLenBuckets, model.sentenceSplitting);
+                try {
+                    // 预热，避免首次推理的内存分配计入结果
+                    predict(candidateModel, text, false);
+                    startTime = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) {
+                        predict(candidateModel, text, false);
+                    }
+                    double latencyMs = (System.nanoTime() - startTime) / 1e6 / Math.max(1, iterations);
+                    
+                    Map<String, Object> entry = candidate.toMap();
+                    entry.put("sessionCreateMs", createNanos / 1e6);
+                    entry.put("avgLatencyMs", latencyMs);
+                    entries.add(entry);
+                    Log.d(TAG, "配置基准测试: " + entry);
+                    
+                    if (latencyMs < bestLatencyMs) {
+                        bestLatencyMs = latencyMs;
+                        bestConfig = candidate;
+                    }
+                } finally {
+                    candidateModel.release();
+                }
+            }
+            
+            Map<String, Object> report = new HashMap<>();
+            report.put("results", entries);
+            if (bestConfig != null) {
+                saveBestConfig(bestConfig, bestLatencyMs);
+                report.put("best", bestConfig.toMap());
+                report.put("bestLatencyMs", bestLatencyMs);
+            }
+            return report;
+        } finally {
+            model.release();
+        }
+    }
+    
+    /**
+     * 基准测试的候选配置：线程数 × 图优化级别 × 当前设备可用的执行提供程序，其余选项沿用当前配置
+     */
+    private List<InferenceConfig> buildBenchmarkCandidates() {
+        InferenceConfig base = activeConfig;
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<InferenceConfig> candidates = new ArrayList<>();
+        for (InferenceConfig.Provider provider : InferenceConfig.Provider.values()) {
+            if (!InferenceConfig.isProviderAvailable(provider)) {
+                continue;
+            }
+            for (int threads = 1; threads <= Math.min(4, cores); threads *= 2) {
+                for (OrtSession.SessionOptions.OptLevel level : new OrtSession.SessionOptions.OptLevel[]{
+                        OrtSession.SessionOptions.OptLevel.BASIC_OPT, OrtSession.SessionOptions.OptLevel.ALL_OPT}) {
+                    candidates.add(base.toBuilder()
+                            .setProvider(provider)
+                            .setIntraOpNumThreads(threads)
+                            .setOptimizationLevel(level)
+                            .build());
+                }
+            }
+        }
+        return candidates;
+    }
+    
+    private void saveBestConfig(InferenceConfig config, double latencyMs) throws IOException, JSONException {
+        File modelDir = new File(context.getFilesDir(), MODEL_CACHE_DIR);
+        if (!modelDir.isDirectory() && !modelDir.mkdirs()) {
+            throw new IOException("无法创建模型目录: " + modelDir);
+        }
+        JSONObject record = new JSONObject();
+        record.put("ortVersion", OrtEnvironment.getEnvironment().getVersion());
+        record.put("avgLatencyMs", latencyMs);
+        record.put("config", new JSONObject(config.toMap()));
+        Files.write(new File(modelDir, BEST_CONFIG_FILE).toPath(), record.toString().getBytes(StandardCharsets.UTF_8));
+        Log.d(TAG, "已记录最快推理配置: " + config + ", 平均延迟: " + latencyMs + "ms");
+    }
+    
+    /**
+     * 文本预处理，只填充到模型可用分桶中所在分桶的长度
+     */
+    private PreprocessedText preprocessText(ModelState model, String text) {
+        long[] tokenIds = inferenceBuffers.get().tokenIds;
+        int seqLen = tokenizeInto(model, text, tokenIds, true);
+        
+        // 截断/填充
+        int padLen = bucketLength(model, seqLen);
+        long[] wordIndicesArray = Arrays.copyOf(tokenIds, padLen);
+        Arrays.fill(wordIndicesArray, seqLen, padLen, PAD_IDX);
+        
+        return new PreprocessedText(wordIndicesArray, seqLen);
+    }
+    
+    /**
+     * 分词并将词表索引直接写入out，超过out长度的部分截断，返回有效长度
+     */
+    private int tokenizeInto(ModelState model, String text, long[] out, boolean useCache) {
+        // 处理空值
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        
+        long startNanos = System.nanoTime();
+        int seqLen = segmentInto(model, text.trim(), out, useCache);
+        TOKENIZE_TIME.recordSince(startNanos);
+        return seqLen;
+    }
+    
+    private int segmentInto(ModelState model, String trimmed, long[] out, boolean useCache) {
+        
+        // 词表分词器足够快，直接把词索引写入输入缓冲区，不经过分句缓存
+        if (model.tokenizer != InferenceConfig.Tokenizer.JIEBA) {
+            return model.vocabSegmenter.segment(trimmed, out, 0, UNK_IDX);
+        }
+        
+        // 不走缓存或未通过分句校验时对整段文本分词，与原有的Jieba分词结果一致
+        if (!useCache || !model.sentenceSplitting) {
+            return wholeTextTokenIdsInto(model, trimmed, out);
+        }
+        return segmentSentencesInto(model, trimmed, out, true);
+    }
+    
+    /**
+     * 对整段文本Jieba分词，词索引直接写入out，超过out长度的部分截断
+     */
+    private int wholeTextTokenIdsInto(ModelState model, String trimmed, long[] out) {
+        // 用户需求：严格使用Jieba分词器，不使用降级处理
+        // 直接调用Jieba分词器，异常会直接抛出
+        List<String> wordList = model.segmenter.sentenceProcess(trimmed);
+        int count = Math.min(wordList.size(), out.length);
+        for (int i = 0; i < count; i++) {
+            out[i] = lookupWordIndex(model, wordList.get(i));
+        }
+        return count;
+    }
+    
+    /**
+     * 按句分词后拼接，useCache为true时已分过的句子直接从缓存取词索引
+     */
+    private int segmentSentencesInto(ModelState model, String trimmed, long[] out, boolean useCache) {
+        int length = trimmed.length();
+        int seqLen = 0;
+        int start = 0;
+        while (start < length && seqLen < out.length) {
+            int end = start;
+            while (end < length && SENTENCE_DELIMITERS.indexOf(trimmed.charAt(end)) < 0) {
+                end++;
+            }
+            end = Math.min(end + 1, length);
+            
+            long[] sentenceIds = sentenceTokenIds(model, trimmed.substring(start, end), useCache);
+            int count = Math.min(sentenceIds.length, out.length - seqLen);
+            System.arraycopy(sentenceIds, 0, out, seqLen, count);
+            seqLen += count;
+            start = end;
+        }
+        return seqLen;
+    }
+    
+    /**
+     * 对单句分词并转换为词索引，useCache为true时先查分句分词缓存
+     */
+    private long[] sentenceTokenIds(ModelState model, String sentence, boolean useCache) {
+        if (useCache) {
+            long[] cached = segmentationCache.get(sentence);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        
+        long[] tokenIds;
+        if (model.tokenizer != InferenceConfig.Tokenizer.JIEBA) {
+            long[] buffer = new long[sentence.length()];
+            int count = model.vocabSegmenter.segment(sentence, buffer, 0, UNK_IDX);
+            tokenIds = Arrays.copyOf(buffer, count);
+        } else {
+            // 用户需求：严格使用Jieba分词器，不使用降级处理
+            // 直接调用Jieba分词器，异常会直接抛出
+            List<String> wordList = model.segmenter.sentenceProcess(sentence);
+            tokenIds = new long[wordList.size()];
+            for (int i = 0; i < tokenIds.length; i++) {
+                tokenIds[i] = lookupWordIndex(model, wordList.get(i));
+            }
+        }
+        
+        if (useCache) {
+            segmentationCache.put(sentence, tokenIds);
+        }
+        return tokenIds;
+    }
+    
+    /**
+     * 查询单个词的词表索引，未登录词返回UNK_IDX
+     */
+    private long lookupWordIndex(ModelState model, String word) {
+        int idx = model.word2idx.get(word);
+        return idx != VocabIndex.NOT_FOUND ? idx : UNK_IDX;
+    }
+    
+    /**
+     * 分词器对比测试：以Jieba+查词表为基准，在语料上分别运行词表正向最大匹配和词表最大概率分词，
+     * 返回各自的吞吐量（字符/秒）、相对Jieba的加速比、逐词边界不一致率和词索引序列完全一致的比例；
+     * texts为null时使用题库语料
+     */
+    public Map<String, Object> benchmarkSegmenters(List<String> texts) throws IOException, JSONException {
+        ModelState model = acquireModel();
+        try {
+            if (texts == null) {
+                texts = loadQuestionBankCorpus(context.getAssets());
+            }
+            List<String> corpus = new ArrayList<>();
+            long totalChars = 0;
+            for (String text : texts) {
+                String trimmed = text != null ? text.trim() : "";
+                if (!trimmed.isEmpty()) {
+                    corpus.add(trimmed);
+                    totalChars += trimmed.length();
+                }
+            }
+            
+            // 基准：Jieba分词后查词表
+            List<List<String>> jiebaWords = new ArrayList<>();
+            List<long[]> jiebaIds = new ArrayList<>();
+            long startTime = System.nanoTime();
+            for (String text : corpus) {
+                List<String> wordList = model.segmenter.sentenceProcess(text);
+                long[] ids = new long[wordList.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = lookupWordIndex(model, wordList.get(i));
+                }
+                jiebaWords.add(wordList);
+                jiebaIds.add(ids);
+            }
+            long jiebaNanos = System.nanoTime() - startTime;
+            
+            Map<String, Object> report = new HashMap<>();
+            report.put("texts", corpus.size());
+            report.put("chars", totalChars);
+            report.put("jiebaCharsPerSec", jiebaNanos > 0 ? totalChars * 1e9 / jiebaNanos : 0.0);
+            report.put("vocab", compareWithJieba(new VocabSegmenter(model.word2idx), corpus, jiebaWords, jiebaIds, jiebaNanos));
+            report.put("vocabMaxProb", compareWithJieba(VocabSegmenter.withJiebaFrequencies(model.word2idx), corpus, jiebaWords, jiebaIds, jiebaNanos));
+            Log.d(TAG, "分词器对比测试结果: " + report);
+            return report;
+        } finally {
+            model.release();
+        }
+    }
+    
+    /**
+     * 在语料上运行词表分词器，与Jieba的结果逐词比对：起止位置都相同的词记为一致
+     */
+    private Map<String, Object> compareWithJieba(VocabSegmenter segmenter, List<String> corpus,
+                                                 List<List<String>> jiebaWords, List<long[]> jiebaIds, long jiebaNanos) {
+        long[] ids = new long[0];
+        long startTime = System.nanoTime();
+        for (String text : corpus) {
+            if (ids.length < text.length()) {
+                ids = new long[text.length()];
+            }
+            segmenter.segment(text, ids, 0, UNK_IDX);
+        }
+        long segmentNanos = System.nanoTime() - startTime;
+        
+        long totalChars = 0;
+        long jiebaTokens = 0;
+        long matchedTokens = 0;
+        int identicalTexts = 0;
+        for (int t = 0; t < corpus.size(); t++) {
+            String text = corpus.get(t);
+            totalChars += text.length();
+            int count = segmenter.segment(text, ids, 0, UNK_IDX);
+            if (Arrays.equals(jiebaIds.get(t), Arrays.copyOf(ids, count))) {
+                identicalTexts++;
+            }
+            
+            int[] ends = new int[text.length()];
+            int endCount = segmenter.segmentBoundaries(text, ends);
+            int jiebaStart = 0;
+            int index = 0;
+            int start = 0;
+            for (String word : jiebaWords.get(t)) {
+                int jiebaEnd = jiebaStart + word.length();
+                while (index < endCount && ends[index] < jiebaEnd) {
+                    start = ends[index++];
+                }
+                if (index < endCount && ends[index] == jiebaEnd && start == jiebaStart) {
+                    matchedTokens++;
+                }
+                jiebaStart = jiebaEnd;
+            }
+            jiebaTokens += jiebaWords.get(t).size();
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("charsPerSec", segmentNanos > 0 ? totalChars * 1e9 / segmentNanos : 0.0);
+        result.put("speedup", segmentNanos > 0 ? (double) jiebaNanos / segmentNanos : 0.0);
+        result.put("tokenDisagreementRate", jiebaTokens > 0 ? 1.0 - (double) matchedTokens / jiebaTokens : 0.0);
+        result.put("identicalRate", corpus.isEmpty() ? 0.0 : (double) identicalTexts / corpus.size());
+        return result;
+    }
+    
+    /**
+     * 读取Flutter打包的题库，提取题目、选项和解析文本作为语料
+     */
+    private List<String> loadQuestionBankCorpus(AssetManager assetManager) throws IOException, JSONException {
+        StringBuilder jsonContent = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(assetManager.open(QUESTION_BANK_PATH), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                jsonContent.append(line);
+            }
+        }
+        
+        List<String> corpus = new ArrayList<>();
+        JSONArray levels = new JSONObject(jsonContent.toString()).getJSONArray("all");
+        for (int i = 0; i < levels.length(); i++) {
+            JSONArray questions = levels.getJSONObject(i).getJSONArray("questions");
+            for (int j = 0; j < questions.length(); j++) {
+                JSONObject question = questions.getJSONObject(j);
+                corpus.add(question.optString("question", ""));
+                corpus.add(question.optString("explanation", ""));
+                JSONArray options = question.optJSONArray("options");
+                for (int k = 0; options != null && k < options.length(); k++) {
+                    corpus.add(options.optString(k));
+                }
+            }
+        }
+        return corpus;
+    }
+    
+    /**
+     * 打开一个流式检测会话，返回会话ID；先回收空闲超时的会话，数量达到上限时回收最久未使用的会话
+     */
+    public int openStream() {
+        if (modelState == null) {
+            throw new IllegalStateException("模型服务尚未初始化");
+        }
+        int streamId = nextStreamId.incrementAndGet();
+        synchronized (streams) {
+            evictStreams();
+            streams.put(streamId, new TokenStream(MAX_SEQ_LEN));
+        }
+        Log.d(TAG, "打开流式检测会话: " + streamId);
+        return streamId;
+    }
+    
+    /**
+     * 回收空闲超时的会话，回收后仍达到MAX_STREAMS时再回收最久未使用的一个，调用方持有streams锁
+     */
+    private void evictStreams() {
+        long now = System.nanoTime();
+        int oldestId = -1;
+        long oldestAccess = Long.MAX_VALUE;
+        Iterator<Map.Entry<Integer, TokenStream>> iterator = streams.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, TokenStream> entry = iterator.next();
+            long lastAccess = entry.getValue().lastAccessNanos;
+            if (now - lastAccess > STREAM_IDLE_TIMEOUT_NANOS) {
+                iterator.remove();
+                Log.w(TAG, "流式检测会话空闲超时，已回收: " + entry.getKey());
+            } else if (lastAccess < oldestAccess) {
+                oldestAccess = lastAccess;
+                oldestId = entry.getKey();
+            }
+        }
+        if (streams.size() >= MAX_STREAMS && oldestId >= 0) {
+            streams.remove(oldestId);
+            Log.w(TAG, "流式检测会话数达到上限，回收最久未使用的会话: " + oldestId);
+        }
+    }
+    
+    /**
+     * 向流式会话追加一句话，只对新文本分词，窗口超过MAX_SEQ_LEN时丢弃最早的词
+     */
+    public void appendToStream(int streamId, String sentence) {
+        ModelState model = acquireModel();
+        try {
+            TokenStream stream = getStream(streamId);
+            if (sentence == null || sentence.trim().isEmpty()) {
+                return;
+            }
+            long[] sentenceIds = sentenceTokenIds(model, sentence.trim(), true);
+            synchronized (stream) {
+                for (long wordIndex : sentenceIds) {
+                    stream.append(wordIndex);
+                }
+            }
+        } finally {
+            model.release();
+        }
+    }
+    
+    /**
+     * 对流式会话当前的词窗口执行推理
+     */
+    public FraudResult scoreStream(int streamId) {
+        ModelState model = acquireModel();
+        try {
+            TokenStream stream = getStream(streamId);
+            
+            InferenceBuffers buffers = inferenceBuffers.get();
+            FraudResult result = new FraudResult();
+            int seqLen = stream.copyTo(buffers.tokenIds);
+            if (seqLen == 0) {
+                result.set(0, 1.0f, 1.0f, 0.0f); // 返回正常结果
+                return result;
+            }
+            
+            runCachedInference(model, buffers, seqLen, true, result);
+            return result;
+        } catch (OrtException e) {
+            Log.e(TAG, "ONNX Runtime流式推理异常: " + e.getMessage(), e);
+            throw new RuntimeException("ONNX Runtime推理失败: " + e.getMessage(), e);
+        } finally {
+            model.release();
+        }
+    }
+    
+    /**
+     * 关闭流式检测会话
+     */
+    public void closeStream(int streamId) {
+        if (streams.remove(streamId) != null) {
+            Log.d(TAG, "关闭流式检测会话: " + streamId);
+        }
+    }
+    
+    private TokenStream getStream(int streamId) {
+        TokenStream stream = streams.get(streamId);
+        if (stream == null) {
+            throw new IllegalArgumentException("流式检测会话不存在或已被回收: " + streamId);
+        }
+        stream.lastAccessNanos = System.nanoTime();
+        return stream;
+    }
+    
+    /**
+     * 模型推理，可由多个线程并发调用
+     */
+    public FraudResult predict(String text) {
+        FraudResult result = new FraudResult();
+        predictInto(text, result);
+        return result;
+    }
+    
+    /**
+     * 推理并把结果写入调用方复用的out，稳态下Java侧不分配对象（Jieba分词和ONNX Runtime的JNI调用除外）
+     */
+    public void predictInto(String text, FraudResult out) {
+        ModelState model = acquireModel();
+        try {
+            predict(model, text, true, out);
+        } finally {
+            model.release();
+        }
+    }
+    
+    private FraudResult predict(ModelState model, String text, boolean useShortcuts) {
+        FraudResult result = new FraudResult();
+        predict(model, text, useShortcuts, result);
+        return result;
+    }
+    
+    /**
+     * 使用指定模型状态推理，结果写入out，调用方负责保证model在调用期间有效；
+     * 初始化检查和基准测试传入useShortcuts=false，跳过缓存和预筛选，保证每次都真正执行ONNX推理
+     */
+    private void predict(ModelState model, String text, boolean useShortcuts, FraudResult out) {
+        // 添加输入检查
+        if (text == null || text.isEmpty()) {
+            out.set(0, 1.0f, 1.0f, 0.0f); // 返回正常结果
+            return;
+        }
+        
+        if (Metrics.isVerbose()) {
+            Log.d(TAG, "开始模型推理，输入文本长度: " + text.length());
+        }
+        
+        try {
+            // 文本预处理：词索引直接写入线程内复用的缓冲区
+            InferenceBuffers buffers = inferenceBuffers.get();
+            int seqLen = tokenizeInto(model, text, buffers.tokenIds, useShortcuts);
+            if (Metrics.isVerbose()) {
+                Log.d(TAG, "文本预处理完成，序列长度: " + seqLen);
+            }
+            
+            runCachedInference(model, buffers, seqLen, useShortcuts, out);
+            
+            if (Metrics.isVerbose()) {
+                Log.d(TAG, "推理结果处理完成，预测标签: " + out.predLabel + ", 概率: " + out.predProb);
+            }
+        } catch (OrtException e) {
+            Log.e(TAG, "ONNX Runtime异常: " + e.getMessage(), e);
+            throw new RuntimeException("ONNX Runtime推理失败: " + e.getMessage(), e);
+        } catch (Exception e) {
+            Log.e(TAG, "模型推理失败，非ONNX异常: " + e.getMessage(), e);
+            throw new RuntimeException("模型推理失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 批量模型推理：并行分词后每BATCH_MAX_ROWS_PER_RUN条打包为一个[N, L]张量执行ONNX推理（L为该组内最长的填充长度）
+     */
+    public List<FraudResult> predictBatch(List<String> texts) {
+        ModelState model = acquireModel();
+        try {
+            return predictBatch(model, texts);
+        } finally {
+            model.release();
+        }
+    }
+    
+    private List<FraudResult> predictBatch(ModelState model, List<String> texts) {
+        List<FraudResult> batchResults = new ArrayList<>();
+        if (texts == null || texts.isEmpty()) {
+            return batchResults;
+        }
+        
+        if (Metrics.isVerbose()) {
+            Log.d(TAG, "开始批量模型推理，输入数量: " + texts.size());
+        }
+        
+        try {
+            // 空文本直接返回正常结果，不参与推理
+            List<Integer> batchPositions = new ArrayList<>();
+            List<Future<PreprocessedText>> futures = new ArrayList<>();
+            ExecutorService executor = model.preprocessExecutor();
+            for (int i = 0; i < texts.size(); i++) {
+                batchResults.add(null);
+                final String text = texts.get(i);
+                if (text == null || text.isEmpty()) {
+                    batchResults.set(i, new FraudResult(0, 1.0f, 1.0f, 0.0f));
+                    continue;
+                }
+                batchPositions.add(i);
+                futures.add(executor.submit(() -> preprocessText(model, text)));
+            }
+            
+            // 命中结果缓存的文本直接返回，其余参与推理
+            List<PreprocessedText> preprocessedTexts = new ArrayList<>();
+            List<Integer> inferencePositions = new ArrayList<>();
+            List<Long> cacheKeys = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                PreprocessedText preprocessedText = futures.get(i).get();
+                long cacheKey = ResultCache.hash(preprocessedText.wordIndices, preprocessedText.seqLen);
+                FraudResult cached = resultCache.get(cacheKey);
+                if (cached != null) {
+                    batchResults.set(batchPositions.get(i), cached);
+                    continue;
+                }
+                preprocessedTexts.add(preprocessedText);
+                inferencePositions.add(batchPositions.get(i));
+                cacheKeys.add(cacheKey);
+            }
+            
+            int pendingCount = preprocessedTexts.size();
+            if (pendingCount == 0) {
+                return batchResults;
+            }
+            
+            // 分组推理，每组打包为一个连续的输入缓冲区
+            for (int from = 0; from < pendingCount; from += BATCH_MAX_ROWS_PER_RUN) {
+                int batchSize = Math.min(BATCH_MAX_ROWS_PER_RUN, pendingCount - from);
+                int seqDim = 0;
+                for (int row = 0; row < batchSize; row++) {
+                    seqDim = Math.max(seqDim, preprocessedTexts.get(from + row).wordIndices.length);
+                }
+                long[] wordIndices = new long[batchSize * seqDim];
+                Arrays.fill(wordIndices, PAD_IDX);
+                long[] seqLens = new long[batchSize];
+                for (int row = 0; row < batchSize; row++) {
+                    PreprocessedText preprocessedText = preprocessedTexts.get(from + row);
+                    System.arraycopy(preprocessedText.wordIndices, 0, wordIndices, row * seqDim, preprocessedText.wordIndices.length);
+                    seqLens[row] = preprocessedText.seqLen;
+                }
+                if (Metrics.isVerbose()) {
+                    Log.d(TAG, "批量文本预处理完成，批大小: " + batchSize + ", 填充长度: " + seqDim);
+                }
+                
+                float[][] logits = runInference(model, wordIndices, seqLens, batchSize, seqDim);
+                for (int row = 0; row < batchSize; row++) {
+                    FraudResult result;
+                    if (logits != null && row < logits.length) {
+                        result = toFraudResult(logits[row]);
+                        resultCache.put(cacheKeys.get(from + row), result);
+                    } else {
+                        result = new FraudResult(0, 0.5f, 0.5f, 0.5f); // 返回中立结果
+                    }
+                    batchResults.set(inferencePositions.get(from + row), result);
+                }
+            }
+            
+            if (Metrics.isVerbose()) {
+                Log.d(TAG, "批量推理完成，批大小: " + pendingCount);
+            }
+            return batchResults;
+        } catch (OrtException e) {
+            Log.e(TAG, "ONNX Runtime批量推理异常: " + e.getMessage(), e);
+            throw new RuntimeException("ONNX Runtime批量推理失败: " + e.getMessage(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            Log.e(TAG, "批量文本预处理失败: " + cause.getMessage(), cause);
+            throw new RuntimeException("批量文本预处理失败: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("批量推理被中断", e);
+        } catch (Exception e) {
+            Log.e(TAG, "批量模型推理失败，非ONNX异常: " + e.getMessage(), e);
+            throw new RuntimeException("批量模型推理失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 多线程吞吐量基准测试：依次用1、2、4……maxThreads个线程并发调用predict，
+     * 每个线程执行iterations次，返回各线程数下的吞吐量（次/秒）和平均延迟（毫秒）
+     */
+    public Map<String, Object> benchmarkThroughput(String text, int maxThreads, int iterations) throws InterruptedException {
+        ModelState model = acquireModel();
+        try {
+            // 预热，避免首次推理的内存分配计入结果
+            predict(model, text, false);
+            
+            Map<String, Object> report = new HashMap<>();
+            report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+            report.put("config", activeConfig.toMap());
+            List<Integer> threadCounts = new ArrayList<>();
+            for (int threads = 1; threads < maxThreads; threads *= 2) {
+                threadCounts.add(threads);
+            }
+            threadCounts.add(Math.max(1, maxThreads));
+            for (final int threadCount : threadCounts) {
+                ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+                try {
+                    List<Future<Long>> futures = new ArrayList<>();
+                    long startTime = System.nanoTime();
+                    for (int t = 0; t < threadCount; t++) {
+                        futures.add(executor.submit(() -> {
+                            long threadStart = System.nanoTime();
+                            for (int i = 0; i < iterations; i++) {
+                                predict(model, text, false);
+                            }
+                            return System.nanoTime() - threadStart;
+                        }));
+                    }
+                    long totalLatencyNanos = 0;
+                    for (Future<Long> future : futures) {
+                        totalLatencyNanos += future.get();
+                    }
+                    long elapsedNanos = System.nanoTime() - startTime;
+                    
+                    Map<String, Object> entry = new HashMap<>();
+                    entry.put("throughput", (double) threadCount * iterations * 1e9 / elapsedNanos);
+                    entry.put("avgLatencyMs", totalLatencyNanos / 1e6 / ((long) threadCount * iterations));
+                    report.put("threads_" + threadCount, entry);
+                    Log.d(TAG, "吞吐量基准测试，线程数: " + threadCount + ", 结果: " + entry);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    throw new RuntimeException("吞吐量基准测试失败: " + cause.getMessage(), cause);
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+            return report;
+        } finally {
+            model.release();
+        }
+    }
+    
+    /**
+     * 稳态内存分配测量：预热后在当前线程上分别重复执行分词、单条ONNX推理（复用输入输出张量）、
+     * 不走缓存的完整预测和命中结果缓存的预测各iterations次，返回每次调用平均分配的字节数。
+     * 数据来自ART的进程级分配计数，按线程本地分配缓冲区的粒度累加，测量期间其他线程的分配也会计入，
+     * 因此迭代次数要足够多；非ART运行时返回-1
+     */
+    public Map<String, Object> benchmarkAllocations(String text, int iterations) throws OrtException {
+        ModelState model = acquireModel();
+        try {
+            String input = text != null && !text.isEmpty() ? text : INIT_CHECK_TEXT;
+            int runs = Math.max(1, iterations);
+            InferenceBuffers buffers = inferenceBuffers.get();
+            FraudResult out = new FraudResult();
+            
+            Map<String, Object> report = new HashMap<>();
+            report.put("tokenizer", model.tokenizer.name());
+            report.put("iterations", runs);
+            
+            // 分词：词索引直接写入线程内缓冲区
+            for (int i = 0; i < runs; i++) {
+                tokenizeInto(model, input, buffers.tokenIds, false);
+            }
+            long startBytes = allocatedBytes();
+            for (int i = 0; i < runs; i++) {
+                tokenizeInto(model, input, buffers.tokenIds, false);
+            }
+            report.put("tokenizeBytesPerCall", bytesPerCall(startBytes, runs));
+            
+            // 单条ONNX推理：输入已在缓冲区中
+            int seqLen = tokenizeInto(model, input, buffers.tokenIds, false);
+            for (int i = 0; i < runs; i++) {
+                runInference(model, buffers, seqLen, out);
+            }
+            startBytes = allocatedBytes();
+            for (int i = 0; i < runs; i++) {
+                runInference(model, buffers, seqLen, out);
+            }
+            report.put("inferenceBytesPerCall", bytesPerCall(startBytes, runs));
+            
+            // 完整预测，跳过缓存和预筛选
+            startBytes = allocatedBytes();
+            for (int i = 0; i < runs; i++) {
+                predict(model, input, false, out);
+            }
+            report.put("predictBytesPerCall", bytesPerCall(startBytes, runs));
+            
+            // 完整预测，第一次之后命中结果缓存（或被预筛选放行）
+            predict(model, input, true, out);
+            startBytes = allocatedBytes();
+            for (int i = 0; i < runs; i++) {
+                predict(model, input, true, out);
+            }
+            report.put("cachedPredictBytesPerCall", bytesPerCall(startBytes, runs));
+            
+            Log.d(TAG, "稳态内存分配测量结果: " + report);
+            return report;
+        } finally {
+            model.release();
+        }
+    }
+    
+    /**
+     * 读取ART自进程启动以来累计分配的字节数，不支持时返回-1
+     */
+    private static long allocatedBytes() {
+        String value = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private static double bytesPerCall(long startBytes, int runs) {
+        long endBytes = allocatedBytes();
+        if (startBytes < 0 || endBytes < 0) {
+            return -1;
+        }
+        return (double) (endBytes - startBytes) / runs;
+    }
+    
+    /**
+     * 长文本推理：不截断，把完整的词序列切成相互重叠的MAX_SEQ_LEN长度窗口，批量推理后聚合。
+     * stride为窗口步长（<=0时使用默认值），pooling决定最终结果使用的聚合方式，各方式的聚合值都会返回
+     */
+    public LongTextResult predictLongText(String text, int stride, Pooling pooling) {
+        ModelState model = acquireModel();
+        try {
+            if (text == null || text.trim().isEmpty()) {
+                return new LongTextResult(new FraudResult(0, 1.0f, 1.0f, 0.0f), 0, new int[0], new float[0], 0f, 0f, 0f);
+            }
+            int windowStride = stride > 0 ? Math.min(stride, MAX_SEQ_LEN) : LONG_TEXT_DEFAULT_STRIDE;
+            
+            // 词数不超过字符数，按字符数分配即可容纳完整序列
+            long[] tokenIds = new long[text.length()];
+            int tokenCount = tokenizeInto(model, text, tokenIds, true);
+            if (tokenCount == 0) {
+                return new LongTextResult(new FraudResult(0, 1.0f, 1.0f, 0.0f), 0, new int[0], new float[0], 0f, 0f, 0f);
+            }
+            
+            // 窗口起点：0, stride, 2*stride...，最后一个窗口与序列末尾对齐
+            List<Integer> starts = new ArrayList<>();
+            int lastStart = Math.max(0, tokenCount - MAX_SEQ_LEN);
+            for (int start = 0; start < lastStart; start += windowStride) {
+                starts.add(start);
+            }
+            starts.add(lastStart);
+            int windowCount = starts.size();
+            int[] windowStarts = new int[windowCount];
+            float[] windowProbs = new float[windowCount];
+            
+            // 命中结果缓存的窗口直接使用缓存结果，其余按批打包推理
+            List<Integer> pendingWindows = new ArrayList<>();
+            long[] cacheKeys = new long[windowCount];
+            for (int w = 0; w < windowCount; w++) {
+                windowStarts[w] = starts.get(w);
+                int windowLen = Math.min(MAX_SEQ_LEN, tokenCount - windowStarts[w]);
+                cacheKeys[w] = ResultCache.hash(tokenIds, windowStarts[w], windowLen);
+                FraudResult cached = resultCache.get(cacheKeys[w]);
+                if (cached != null) {
+                    windowProbs[w] = cached.fraudProb;
+                } else {
+                    pendingWindows.add(w);
+                }
+            }
+            
+            int seqDim = bucketLength(model, Math.min(tokenCount, MAX_SEQ_LEN));
+            for (int from = 0; from < pendingWindows.size(); from += LONG_TEXT_MAX_WINDOWS_PER_RUN) {
+                int batchSize = Math.min(LONG_TEXT_MAX_WINDOWS_PER_RUN, pendingWindows.size() - from);
+                long[] wordIndices = new long[batchSize * seqDim];
+                long[] seqLens = new long[batchSize];
+                for (int row = 0; row < batchSize; row++) {
+                    int start = windowStarts[pendingWindows.get(from + row)];
+                    int windowLen = Math.min(MAX_SEQ_LEN, tokenCount - start);
+                    System.arraycopy(tokenIds, start, wordIndices, row * seqDim, windowLen);
+                    seqLens[row] = windowLen;
+                }
+                
+                float[][] logits = runInference(model, wordIndices, seqLens, batchSize, seqDim);
+                for (int row = 0; row < batchSize; row++) {
+                    int w = pendingWindows.get(from + row);
+                    if (logits != null && row < logits.length) {
+                        FraudResult windowResult = toFraudResult(logits[row]);
+                        resultCache.put(cacheKeys[w], windowResult);
+                        windowProbs[w] = windowResult.fraudProb;
+                    } else {
+                        windowProbs[w] = 0.5f; // 中立结果
+                    }
+                }
+            }
+            
+            // 聚合：最大值、平均值，以及按窗口风险做softmax加权的注意力式池化
+            float maxProb = 0f;
+            float sumProb = 0f;
+            for (float prob : windowProbs) {
+                maxProb = Math.max(maxProb, prob);
+                sumProb += prob;
+            }
+            float meanProb = sumProb / windowCount;
+            double weightSum = 0;
+            double weightedProb = 0;
+            for (float prob : windowProbs) {
+                double weight = Math.exp((prob - maxProb) / ATTENTION_POOLING_TEMPERATURE);
+                weightSum += weight;
+                weightedProb += weight * prob;
+            }
+            float attentionProb = (float) (weightedProb / weightSum);
+            
+            float fraudProb = pooling == Pooling.MEAN ? meanProb : pooling == Pooling.ATTENTION ? attentionProb : maxProb;
+            int predLabel = fraudProb > 0.5f ? 1 : 0;
+            FraudResult result = new FraudResult(predLabel, predLabel == 1 ? fraudProb : 1 - fraudProb, 1 - fraudProb, fraudProb);
+            if (Metrics.isVerbose()) {
+                Log.d(TAG, "长文本推理完成，词数: " + tokenCount + ", 窗口数: " + windowCount
+                        + ", 实际推理窗口数: " + pendingWindows.size() + ", 结果: " + result);
+            }
+            return new LongTextResult(result, tokenCount, windowStarts, windowProbs, maxProb, meanProb, attentionProb);
+        } catch (OrtException e) {
+            Log.e(TAG, "ONNX Runtime长文本推理异常: " + e.getMessage(), e);
+            throw new RuntimeException("ONNX Runtime推理失败: " + e.getMessage(), e);
+        } finally {
+            model.release();
+        }
+    }
+    
+    /**
+     * 一级预筛选：可疑概率低于放行阈值时把正常结果写入out并返回true，否则返回false交给模型推理；
+     * 放行结果的概率是预筛选的可疑概率而不是模型概率，用preFiltered标记区分
+     */
+    private boolean preFilter(ModelState model, long[] tokenIds, int seqLen, FraudResult out) {
+        if (model.preFilter == null) {
+            return false;
+        }
+        float suspicion = model.preFilter.score(tokenIds, seqLen);
+        if (!model.preFilter.shouldPass(suspicion)) {
+            return false;
+        }
+        out.set(0, 1.0f - suspicion, 1.0f - suspicion, suspicion);
+        out.preFiltered = true;
+        return true;
+    }
+    
+    /**
+     * 评估预筛选权重的校准：以BiLSTM模型的判定为参照，统计语料中被放行的比例，以及模型判为诈骗却被放行（漏检）的比例。
+     * 使用新加载的预筛选器，不影响线上统计；texts为null时使用初始化测试文本和题库语料，passThreshold为null时使用当前配置的阈值
+     */
+    public Map<String, Object> evaluatePreFilter(List<String> texts, Float passThreshold) throws IOException, JSONException {
+        ModelState model = acquireModel();
+        try {
+            float threshold = passThreshold != null ? passThreshold : activeConfig.preFilterPassThreshold;
+            PreFilter filter;
+            try (InputStream inputStream = context.getAssets().open(PREFILTER_WEIGHTS_PATH)) {
+                filter = PreFilter.load(inputStream, model.word2idx, threshold);
+            }
+            if (texts == null) {
+                texts = new ArrayList<>();
+                texts.add(INIT_CHECK_TEXT);
+                texts.addAll(loadQuestionBankCorpus(context.getAssets()));
+            }
+            
+            long[] tokenIds = new long[MAX_SEQ_LEN];
+            int evaluated = 0;
+            int passed = 0;
+            int modelFraud = 0;
+            int missedFraud = 0;
+            float maxMissedFraudProb = 0f;
+            for (String text : texts) {
+                String trimmed = text != null ? text.trim() : "";
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                evaluated++;
+                int seqLen = tokenizeInto(model, trimmed, tokenIds, false);
+                boolean pass = filter.shouldPass(filter.score(tokenIds, seqLen));
+                FraudResult result = predict(model, trimmed, false);
+                if (pass) {
+                    passed++;
+                }
+                if (result.predLabel == POS_LABEL) {
+                    modelFraud++;
+                    if (pass) {
+                        missedFraud++;
+                        maxMissedFraudProb = Math.max(maxMissedFraudProb, result.fraudProb);
+                    }
+                }
+            }
+            
+            Map<String, Object> report = new HashMap<>();
+            report.put("texts", evaluated);
+            report.put("passThreshold", threshold);
+            report.put("passRate", evaluated > 0 ? (double) passed / evaluated : 0.0);
+            report.put("modelFraud", modelFraud);
+            report.put("missedFraud", missedFraud);
+            report.put("missRate", modelFraud > 0 ? (double) missedFraud / modelFraud : 0.0);
+            report.put("maxMissedFraudProb", maxMissedFraudProb);
+            Log.d(TAG, "预筛选校准评估结果: " + report);
+            return report;
+        } finally {
+            model.release();
+        }
+    }
+    
+    /**
+     * 获取预筛选的放行/升级统计，未启用预筛选时只返回enabled=false
+     */
+    public Map<String, Object> getPreFilterStats() {
+        ModelState model = modelState;
+        Map<String, Object> stats = model != null && model.preFilter != null
+                ? model.preFilter.getStats() : new HashMap<>();
+        stats.put("enabled", model != null && model.preFilter != null);
+        return stats;
+    }
+    
+    /**
+     * 单条推理，结果写入out；useShortcuts为true时先查结果缓存，未命中再经过预筛选，都没有命中才执行ONNX推理。
+     * 缓存中只有模型结果，因此之前由模型判过的文本总是返回模型概率；预筛选放行的结果带preFiltered标记，不写入缓存
+     */
+    private void runCachedInference(ModelState model, InferenceBuffers buffers, int seqLen, boolean useShortcuts,
+                                    FraudResult out) throws OrtException {
+        long cacheKey = 0;
+        if (useShortcuts) {
+            cacheKey = ResultCache.hash(buffers.tokenIds, seqLen);
+            if (resultCache.getInto(cacheKey, out)) {
+                return;
+            }
+            if (preFilter(model, buffers.tokenIds, seqLen, out)) {
+                return;
+            }
+        }
+        
+        runInference(model, buffers, seqLen, out);
+        if (useShortcuts) {
+            resultCache.put(cacheKey, out);
+        }
+    }
+    
+    /**
+     * 使用线程内复用的缓冲区和张量执行单条推理，buffers.tokenIds前seqLen个为有效词索引，结果写入out；
+     * 输入张量直接引用缓冲区，输出写入固定的logits缓冲区，不创建张量也不拷贝输出数组
+     */
+    private void runInference(ModelState model, InferenceBuffers buffers, int seqLen, FraudResult out) throws OrtException {
+        int padLen = bucketLength(model, seqLen);
+        Arrays.fill(buffers.tokenIds, seqLen, padLen, PAD_IDX);
+        
+        LongBuffer wordIndices = buffers.wordIndices;
+        wordIndices.clear();
+        wordIndices.put(buffers.tokenIds, 0, padLen);
+        buffers.seqLens.put(0, seqLen);
+        
+        Map<String, OnnxTensor> inputMap = buffers.inputMap;
+        inputMap.put("word_indices", buffers.wordIndicesTensor(ortEnvironment, padLen));
+        inputMap.put("seq_lens", buffers.seqLensTensor(ortEnvironment));
+        
+        // 固定输出不归Result所有，关闭Result不会释放它
+        try (OrtSession.Result results = runSession(model, inputMap, buffers.outputMap(ortEnvironment, model.outputName), 1, padLen)) {
+            toFraudResult(buffers.logits.get(0), buffers.logits.get(1), out);
+        }
+    }
+    
+    /**
+     * 执行ONNX推理，wordIndices为按行展开的[batchSize, seqDim]数据
+     */
+    private float[][] runInference(ModelState model, long[] wordIndices, long[] seqLens, int batchSize, int seqDim) throws OrtException {
+        return runInference(model, LongBuffer.wrap(wordIndices), LongBuffer.wrap(seqLens), batchSize, seqDim, new HashMap<>());
+    }
+    
+    /**
+     * 执行ONNX推理，inputMap由调用方提供以便复用
+     */
+    private float[][] runInference(ModelState model, LongBuffer wordIndices, LongBuffer seqLens, int batchSize, int seqDim,
+                                   Map<String, OnnxTensor> inputMap) throws OrtException {
+        OnnxTensor wordIndicesTensor = null;
+        OnnxTensor seqLensTensor = null;
+        OrtSession.Result results = null;
+        
+        try {
+            // 使用安全方式创建张量
+            // 直接缓冲区不会被ONNX Runtime再拷贝一次
+            wordIndicesTensor = OnnxTensor.createTensor(ortEnvironment, wordIndices, new long[]{batchSize, seqDim});
+            seqLensTensor = OnnxTensor.createTensor(ortEnvironment, seqLens, new long[]{batchSize});
+            
+            // 构建输入映射
+            inputMap.put("word_indices", wordIndicesTensor);
+            inputMap.put("seq_lens", seqLensTensor);
+            
+            results = runSession(model, inputMap, null, batchSize, seqDim);
+            
+            // 处理输出
+            if (results.size() > 0) {
+                return (float[][]) results.get(0).getValue();
+            }
+            return null;
+        } finally {
+            // 安全释放资源
+            if (wordIndicesTensor != null) {
+                try {
+                    wordIndicesTensor.close();
+                } catch (Exception e) {
+                    Log.e(TAG, "释放wordIndicesTensor失败: " + e.getMessage());
+                }
+            }
+            if (seqLensTensor != null) {
+                try {
+                    seqLensTensor.close();
+                } catch (Exception e) {
+                    Log.e(TAG, "释放seqLensTensor失败: " + e.getMessage());
+                }
+            }
+            if (results != null) {
+                try {
+                    results.close();
+                } catch (Exception e) {
+                    Log.e(TAG, "释放results失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * 执行ONNX推理并记录指标，pinnedOutputs不为null时输出写入调用方提供的张量
+     */
+    private OrtSession.Result runSession(ModelState model, Map<String, OnnxTensor> inputMap, Map<String, OnnxTensor> pinnedOutputs,
+                                         int batchSize, int seqDim) throws OrtException {
+        // 执行推理，OrtSession.run本身是线程安全的
+        long startNanos = System.nanoTime();
+        OrtSession.Result results = pinnedOutputs != null
+                ? model.session.run(inputMap, pinnedOutputs) : model.session.run(inputMap);
+        ORT_RUN_TIME.recordSince(startNanos);
+        ORT_RUNS.increment();
+        ORT_RUN_ROWS.add(batchSize);
+        
+        if (Metrics.isVerbose()) {
+            Log.d(TAG, "推理执行完成，批大小: " + batchSize + ", 序列长度: " + seqDim + ", 输出数量: " + results.size());
+        }
+        return results;
+    }
+    
+    /**
+     * 将单行logits转换为检测结果
+     */
+    private FraudResult toFraudResult(float[] logits) {
+        FraudResult result = new FraudResult();
+        toFraudResult(logits[0], logits[1], result);
+        return result;
+    }
+    
+    /**
+     * 二分类logits做softmax后写入out，不分配数组
+     */
+    private static void toFraudResult(float normalLogit, float fraudLogit, FraudResult out) {
+        // 减去最大值保证数值稳定
+        float maxLogit = Math.max(normalLogit, fraudLogit);
+        float normalExp = (float) Math.exp(normalLogit - maxLogit);
+        float fraudExp = (float) Math.exp(fraudLogit - maxLogit);
+        float sumExp = normalExp + fraudExp;
+        float normalProb = normalExp / sumExp;
+        float fraudProb = fraudExp / sumExp;
+        
+        // 确定预测标签
+        int predLabel = fraudProb > normalProb ? 1 : 0;
+        out.set(predLabel, predLabel == 1 ? fraudProb : normalProb, normalProb, fraudProb);
+    }
+    
+    /**
+     * 获取当前模型状态并增加引用计数，使用完毕后必须调用release()
+     */
+    private ModelState acquireModel() {
+        ModelState model = modelState;
+        if (model == null || !model.acquire()) {
+            throw new IllegalStateException("模型服务尚未初始化");
+        }
+        return model;
+    }
+    
+    /**
+     * 释放资源
+     */
+    public synchronized void cleanup() {
+        initGeneration++;
+        initFuture = null;
+        try {
+            // 先摘下模型状态再释放持有的引用，正在进行的推理结束后Session才会真正关闭
+            ModelState model = modelState;
+            modelState = null;
+            if (model != null) {
+                model.release();
+            }
+            
+            // OrtEnvironment是进程内单例，正在进行的推理仍需用它创建张量，这里不关闭
+            
+            streams.clear();
+            resultCache.clear();
+            segmentationCache.clear();
+            
+            Log.d(TAG, "模型服务资源已释放");
+        } catch (Exception e) {
+            Log.e(TAG, "释放资源失败 - 其他异常: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 获取初始化状态
+     */
+    public boolean isInitialized() {
+        return modelState != null;
+    }
+    
+    /**
+     * 初始化完成后不再变化的模型状态，通过引用计数保证推理过程中Session不被关闭
+     */
+    private static class ModelState {
+        final VocabIndex word2idx;
+        final JiebaSegmenter segmenter;
+        final VocabSegmenter vocabSegmenter;
+        final InferenceConfig.Tokenizer tokenizer;
+        final PreFilter preFilter; // 未启用预筛选时为null
+        final OrtSession session;
+        final String outputName;         // 取第一个输出作为logits，形状为[batchSize, 2]
+        final int[] seqLenBuckets;       // 可用的填充长度分桶，只保留通过分桶一致性校验的，最后一档为MAX_SEQ_LEN
+        final boolean sentenceSplitting; // Jieba分词时按句切分后拼接（可走分句缓存），通过分句一致性校验才启用
+        private final AtomicInteger refCount = new AtomicInteger(1); // 初始引用由服务持有
+        private ExecutorService preprocessExecutor; // 批量推理时用于并行分词的线程池，懒加载，随最后一个引用释放而关闭
+        
+        ModelState(VocabIndex word2idx, JiebaSegmenter segmenter, OrtSession session, InferenceConfig.Tokenizer tokenizer,
+                   PreFilter preFilter, int[] seqLenBuckets, boolean sentenceSplitting) {
+            this.word2idx = word2idx;
+            this.segmenter = segmenter;
+            this.vocabSegmenter = tokenizer == InferenceConfig.Tokenizer.VOCAB_MAX_PROB
+                    ? VocabSegmenter.withJiebaFrequencies(word2idx) : new VocabSegmenter(word2idx);
+            this.tokenizer = tokenizer;
+            this.preFilter = preFilter;
+            this.session = session;
+            this.outputName = session.getOutputNames().iterator().next();
+            this.seqLenBuckets = seqLenBuckets;
+            this.sentenceSplitting = sentenceSplitting;
+        }
+        
+        /**
+         * 以校验后的分桶和分句设置接管source的Session，source尚未发布且之后不再使用
+         */
+        ModelState(ModelState source, int[] seqLenBuckets, boolean sentenceSplitting) {
+            this.word2idx = source.word2idx;
+            this.segmenter = source.segmenter;
+            this.vocabSegmenter = source.vocabSegmenter;
+            this.tokenizer = source.tokenizer;
+            this.preFilter = source.preFilter;
+            this.session = source.session;
+            this.outputName = source.outputName;
+            this.seqLenBuckets = seqLenBuckets;
+            this.sentenceSplitting = sentenceSplitting;
+        }
+        
+        boolean acquire() {
+            while (true) {
+                int count = refCount.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (refCount.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+        
+        /**
+         * 获取批量预处理线程池，调用方必须持有引用，因此使用期间线程池不会被关闭
+         */
+        synchronized ExecutorService preprocessExecutor() {
+            if (preprocessExecutor == null) {
+                int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+                preprocessExecutor = Executors.newFixedThreadPool(threads);
+            }
+            return preprocessExecutor;
+        }
+        
+        void release() {
+            if (refCount.decrementAndGet() == 0) {
+                synchronized (this) {
+                    if (preprocessExecutor != null) {
+                        preprocessExecutor.shutdown();
+                        preprocessExecutor = null;
+                    }
+                }
+                try {
+                    session.close();
+                } catch (Exception e) {
+                    Log.e(TAG, "释放ONNX Session失败: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 预处理文本结果类
+     */
+    private static class PreprocessedText {
+        long[] wordIndices;
+        int seqLen;
+        
+        PreprocessedText(long[] wordIndices, int seqLen) {
+            this.wordIndices = wordIndices;
+            this.seqLen = seqLen;
+        }
+    }
+    
+    /**
+     * 流式会话的词索引环形缓冲区，保存最近capacity个词
+     */
+    private static class TokenStream {
+        private final long[] ring;
+        private int head = 0; // 最早一个词的位置
+        private int count = 0;
+        volatile long lastAccessNanos = System.nanoTime(); // 最近一次追加或评分的时间，用于回收空闲会话
+        
+        TokenStream(int capacity) {
+            this.ring = new long[capacity];
+        }
+        
+        synchronized void append(long wordIndex) {
+            int tail = (head + count) % ring.length;
+            ring[tail] = wordIndex;
+            if (count < ring.length) {
+                count++;
+            } else {
+                head = (head + 1) % ring.length;
+            }
+        }
+        
+        /**
+         * 按时间顺序将窗口内的词索引复制到out，返回词数
+         */
+        synchronized int copyTo(long[] out) {
+            int firstPart = Math.min(count, ring.length - head);
+            System.arraycopy(ring, head, out, 0, firstPart);
+            System.arraycopy(ring, 0, out, firstPart, count - firstPart);
+            return count;
+        }
+    }
+    
+    /**
+     * 单条推理复用的缓冲区：词索引数组、ONNX直接输入输出缓冲区、引用这些缓冲区的张量和输入输出映射。
+     * 张量与Session无关，模型重新初始化后继续复用，随线程结束由GC回收
+     */
+    private static class InferenceBuffers {
+        final long[] tokenIds;
+        final LongBuffer wordIndices;
+        final LongBuffer seqLens;
+        final FloatBuffer logits;
+        final Map<String, OnnxTensor> inputMap = new HashMap<>();
+        // 按SEQ_LEN_BUCKETS下标缓存的[1, 分桶长度]输入张量，都引用wordIndices开头的同一块内存
+        private final OnnxTensor[] wordIndicesTensors = new OnnxTensor[SEQ_LEN_BUCKETS.length];
+        private OnnxTensor seqLensTensor;
+        private OnnxTensor logitsTensor;
+        private Map<String, OnnxTensor> outputMap;
+        
+        InferenceBuffers(int maxSeqLen) {
+            this.tokenIds = new long[maxSeqLen];
+            this.wordIndices = ByteBuffer.allocateDirect(maxSeqLen * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+            this.seqLens = ByteBuffer.allocateDirect(Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+            this.logits = ByteBuffer.allocateDirect(2 * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+        
+        /**
+         * 获取引用wordIndices前seqDim个元素的输入张量，seqDim必须是SEQ_LEN_BUCKETS中的一档
+         */
+        OnnxTensor wordIndicesTensor(OrtEnvironment environment, int seqDim) throws OrtException {
+            int bucket = Arrays.binarySearch(SEQ_LEN_BUCKETS, seqDim);
+            if (bucket < 0) {
+                throw new IllegalArgumentException("不是有效的分桶长度: " + seqDim);
+            }
+            if (wordIndicesTensors[bucket] == null) {
+                LongBuffer view = wordIndices.duplicate();
+                view.clear();
+                view.limit(seqDim);
+                wordIndicesTensors[bucket] = OnnxTensor.createTensor(environment, view.slice(), new long[]{1, seqDim});
+            }
+            return wordIndicesTensors[bucket];
+        }
+        
+        OnnxTensor seqLensTensor(OrtEnvironment environment) throws OrtException {
+            if (seqLensTensor == null) {
+                seqLensTensor = OnnxTensor.createTensor(environment, seqLens, new long[]{1});
+            }
+            return seqLensTensor;
+        }
+        
+        /**
+         * 获取把模型输出固定写入logits缓冲区的输出映射
+         */
+        Map<String, OnnxTensor> outputMap(OrtEnvironment environment, String outputName) throws OrtException {
+            if (logitsTensor == null) {
+                logitsTensor = OnnxTensor.createTensor(environment, logits, new long[]{1, 2});
+            }
+            if (outputMap == null || !outputMap.containsKey(outputName)) {
+                outputMap = Collections.singletonMap(outputName, logitsTensor);
+            }
+            return outputMap;
+        }
+    }
+    
+    /**
+     * 长文本窗口结果的聚合方式
+     */
+    public enum Pooling {
+        MAX,
+        MEAN,
+        ATTENTION
+    }
+    
+    /**
+     * 长文本推理结果类：聚合后的检测结果和每个窗口的诈骗概率
+     */
+    public static class LongTextResult {
+        public final FraudResult result;
+        public final int tokenCount;
+        public final int[] windowStarts;      // 每个窗口在词序列中的起点
+        public final float[] windowFraudProbs;
+        public final float maxFraudProb;
+        public final float meanFraudProb;
+        public final float attentionFraudProb;
+        
+        LongTextResult(FraudResult result, int tokenCount, int[] windowStarts, float[] windowFraudProbs,
+                       float maxFraudProb, float meanFraudProb, float attentionFraudProb) {
+            this.result = result;
+            this.tokenCount = tokenCount;
+            this.windowStarts = windowStarts;
+            this.windowFraudProbs = windowFraudProbs;
+            this.maxFraudProb = maxFraudProb;
+            this.meanFraudProb = meanFraudProb;
+            this.attentionFraudProb = attentionFraudProb;
+        }
+    }
+    
+    /**
+     * 诈骗检测结果类
+     */
+    public static class FraudResult {
         public int predLabel;
         public float predProb;
         public float normalProb;
         public float fraudProb;
+        public boolean preFiltered; // 由一级预筛选放行，概率是预筛选的可疑概率而不是模型输出
+        
+        public FraudResult() {
+        }
         
         public FraudResult(int predLabel, float predProb, float normalProb, float fraudProb) {
+            set(predLabel, predProb, normalProb, fraudProb);
+        }
+        
+        public void set(int predLabel, float predProb, float normalProb, float fraudProb) {
             this.predLabel = predLabel;
             this.predProb = predProb;
             this.normalProb = normalProb;
             this.fraudProb = fraudProb;
+            this.preFiltered = false;
         }
         
         @Override
@@ -459,6 +2388,7 @@ public class FraudDetectionService {
                     ", predProb=" + predProb +
                     ", normalProb=" + normalProb +
                     ", fraudProb=" + fraudProb +
+                    ", preFiltered=" + preFiltered +
                     '}';
         }
     }
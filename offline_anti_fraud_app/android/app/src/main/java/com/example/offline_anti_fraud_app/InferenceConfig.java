@@ -0,0 +1,294 @@
+package com.example.offline_anti_fraud_app;
+
+import android.util.Log;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtProvider;
+import ai.onnxruntime.OrtSession;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 推理配置
+ * 描述创建ONNX Session时使用的线程数、图优化级别、内存选项和执行提供程序，
+ * 以及推理时是否按长度分桶填充、使用哪种分词器、Jieba是否按句切分、是否启用一级预筛选；对象不可变，通过Builder创建
+ */
+public class InferenceConfig {
+    private static final String TAG = "InferenceConfig";
+    
+    /** 执行提供程序 */
+    public enum Provider {
+        CPU,
+        NNAPI,
+        XNNPACK
+    }
+    
+    /** 分词器 */
+    public enum Tokenizer {
+        JIEBA,          // Jieba分词后查词表
+        VOCAB,          // 直接在模型词表上正向最大匹配，见VocabSegmenter
+        VOCAB_MAX_PROB  // 在模型词表上按Jieba词频求最大概率切分，见VocabSegmenter
+    }
+    
+    public final int intraOpNumThreads;       // 0表示使用ONNX Runtime默认值
+    public final int interOpNumThreads;       // 0表示使用ONNX Runtime默认值
+    public final OrtSession.SessionOptions.OptLevel optimizationLevel;
+    public final boolean memoryPatternOptimization;
+    public final boolean cpuArenaAllocator;
+    public final Provider provider;
+    public final boolean lengthBucketing;
+    public final Tokenizer tokenizer;
+    public final boolean sentenceSplitting;     // Jieba按句切分以复用分句缓存，默认关闭，开启后还需通过语料一致性校验
+    public final boolean preFilterEnabled;
+    public final float preFilterPassThreshold;  // 预筛选可疑概率低于该值时直接判为正常
+    
+    private InferenceConfig(Builder builder) {
+        this.intraOpNumThreads = builder.intraOpNumThreads;
+        this.interOpNumThreads = builder.interOpNumThreads;
+        this.optimizationLevel = builder.optimizationLevel;
+        this.memoryPatternOptimization = builder.memoryPatternOptimization;
+        this.cpuArenaAllocator = builder.cpuArenaAllocator;
+        this.provider = builder.provider;
+        this.lengthBucketing = builder.lengthBucketing;
+        this.tokenizer = builder.tokenizer;
+        this.sentenceSplitting = builder.sentenceSplitting;
+        this.preFilterEnabled = builder.preFilterEnabled;
+        this.preFilterPassThreshold = builder.preFilterPassThreshold;
+    }
+    
+    /**
+     * 默认配置，与不设置任何SessionOptions时的行为一致
+     */
+    public static InferenceConfig defaults() {
+        return new Builder().build();
+    }
+    
+    public Builder toBuilder() {
+        return new Builder()
+                .setIntraOpNumThreads(intraOpNumThreads)
+                .setInterOpNumThreads(interOpNumThreads)
+                .setOptimizationLevel(optimizationLevel)
+                .setMemoryPatternOptimization(memoryPatternOptimization)
+                .setCpuArenaAllocator(cpuArenaAllocator)
+                .setProvider(provider)
+                .setLengthBucketing(lengthBucketing)
+                .setTokenizer(tokenizer)
+                .setSentenceSplitting(sentenceSplitting)
+                .setPreFilterEnabled(preFilterEnabled)
+                .setPreFilterPassThreshold(preFilterPassThreshold);
+    }
+    
+    /**
+     * 将配置应用到SessionOptions，设备不支持的执行提供程序会被跳过并回退到CPU
+     */
+    void applyTo(OrtSession.SessionOptions sessionOptions) throws OrtException {
+        if (intraOpNumThreads > 0) {
+            sessionOptions.setIntraOpNumThreads(intraOpNumThreads);
+        }
+        if (interOpNumThreads > 0) {
+            sessionOptions.setInterOpNumThreads(interOpNumThreads);
+        }
+        sessionOptions.setOptimizationLevel(optimizationLevel);
+        sessionOptions.setMemoryPatternOptimization(memoryPatternOptimization);
+        sessionOptions.setCPUArenaAllocator(cpuArenaAllocator);
+        
+        if (provider == Provider.CPU) {
+            return;
+        }
+        if (!isProviderAvailable(provider)) {
+            Log.w(TAG, "执行提供程序不可用，回退到CPU: " + provider);
+            return;
+        }
+        try {
+            if (provider == Provider.NNAPI) {
+                sessionOptions.addNnapi();
+            } else {
+                // XNNPACK自带线程池，线程数与intraOp保持一致
+                Map<String, String> options = intraOpNumThreads > 0
+                        ? Collections.singletonMap("intra_op_num_threads", String.valueOf(intraOpNumThreads))
+                        : Collections.emptyMap();
+                sessionOptions.addXnnpack(options);
+            }
+        } catch (OrtException e) {
+            Log.w(TAG, "添加执行提供程序失败，回退到CPU: " + provider + ", " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 当前ONNX Runtime构建是否包含指定的执行提供程序
+     */
+    static boolean isProviderAvailable(Provider provider) {
+        if (provider == Provider.CPU) {
+            return true;
+        }
+        EnumSet<OrtProvider> available = OrtEnvironment.getAvailableProviders();
+        return available != null && available.contains(OrtProvider.valueOf(provider.name()));
+    }
+    
+    /**
+     * 从Flutter传入的参数解析配置，缺省的字段使用默认值
+     */
+    public static InferenceConfig fromMap(Map<String, Object> map) {
+        Builder builder = new Builder();
+        if (map == null) {
+            return builder.build();
+        }
+        if (map.get("intraOpNumThreads") instanceof Number) {
+            builder.setIntraOpNumThreads(((Number) map.get("intraOpNumThreads")).intValue());
+        }
+        if (map.get("interOpNumThreads") instanceof Number) {
+            builder.setInterOpNumThreads(((Number) map.get("interOpNumThreads")).intValue());
+        }
+        if (map.get("optimizationLevel") instanceof String) {
+            builder.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.valueOf((String) map.get("optimizationLevel")));
+        }
+        if (map.get("memoryPatternOptimization") instanceof Boolean) {
+            builder.setMemoryPatternOptimization((Boolean) map.get("memoryPatternOptimization"));
+        }
+        if (map.get("cpuArenaAllocator") instanceof Boolean) {
+            builder.setCpuArenaAllocator((Boolean) map.get("cpuArenaAllocator"));
+        }
+        if (map.get("provider") instanceof String) {
+            builder.setProvider(Provider.valueOf((String) map.get("provider")));
+        }
+        if (map.get("lengthBucketing") instanceof Boolean) {
+            builder.setLengthBucketing((Boolean) map.get("lengthBucketing"));
+        }
+        if (map.get("tokenizer") instanceof String) {
+            builder.setTokenizer(Tokenizer.valueOf((String) map.get("tokenizer")));
+        }
+        if (map.get("sentenceSplitting") instanceof Boolean) {
+            builder.setSentenceSplitting((Boolean) map.get("sentenceSplitting"));
+        }
+        if (map.get("preFilterEnabled") instanceof Boolean) {
+            builder.setPreFilterEnabled((Boolean) map.get("preFilterEnabled"));
+        }
+        if (map.get("preFilterPassThreshold") instanceof Number) {
+            builder.setPreFilterPassThreshold(((Number) map.get("preFilterPassThreshold")).floatValue());
+        }
+        return builder.build();
+    }
+    
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("intraOpNumThreads", intraOpNumThreads);
+        map.put("interOpNumThreads", interOpNumThreads);
+        map.put("optimizationLevel", optimizationLevel.name());
+        map.put("memoryPatternOptimization", memoryPatternOptimization);
+        map.put("cpuArenaAllocator", cpuArenaAllocator);
+        map.put("provider", provider.name());
+        map.put("lengthBucketing", lengthBucketing);
+        map.put("tokenizer", tokenizer.name());
+        map.put("sentenceSplitting", sentenceSplitting);
+        map.put("preFilterEnabled", preFilterEnabled);
+        map.put("preFilterPassThreshold", preFilterPassThreshold);
+        return map;
+    }
+    
+    /**
+     * 从JSON恢复配置，用于读取基准测试记录的最快配置
+     */
+    public static InferenceConfig fromJson(String json) throws JSONException {
+        JSONObject object = new JSONObject(json);
+        Map<String, Object> map = new HashMap<>();
+        Iterator<String> keys = object.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            map.put(key, object.get(key));
+        }
+        return fromMap(map);
+    }
+    
+    public String toJson() {
+        return new JSONObject(toMap()).toString();
+    }
+    
+    @Override
+    public String toString() {
+        return "InferenceConfig" + toMap();
+    }
+    
+    /**
+     * 推理配置构建器
+     */
+    public static class Builder {
+        private int intraOpNumThreads = 0;
+        private int interOpNumThreads = 0;
+        private OrtSession.SessionOptions.OptLevel optimizationLevel = OrtSession.SessionOptions.OptLevel.ALL_OPT;
+        private boolean memoryPatternOptimization = true;
+        private boolean cpuArenaAllocator = true;
+        private Provider provider = Provider.CPU;
+        private boolean lengthBucketing = true;
+        private Tokenizer tokenizer = Tokenizer.JIEBA;
+        private boolean sentenceSplitting = false;
+        private boolean preFilterEnabled = false;
+        private float preFilterPassThreshold = 0.1f;
+        
+        public Builder setIntraOpNumThreads(int threads) {
+            this.intraOpNumThreads = Math.max(0, threads);
+            return this;
+        }
+        
+        public Builder setInterOpNumThreads(int threads) {
+            this.interOpNumThreads = Math.max(0, threads);
+            return this;
+        }
+        
+        public Builder setOptimizationLevel(OrtSession.SessionOptions.OptLevel level) {
+            this.optimizationLevel = level;
+            return this;
+        }
+        
+        public Builder setMemoryPatternOptimization(boolean enabled) {
+            this.memoryPatternOptimization = enabled;
+            return this;
+        }
+        
+        public Builder setCpuArenaAllocator(boolean enabled) {
+            this.cpuArenaAllocator = enabled;
+            return this;
+        }
+        
+        public Builder setProvider(Provider provider) {
+            this.provider = provider;
+            return this;
+        }
+        
+        public Builder setLengthBucketing(boolean enabled) {
+            this.lengthBucketing = enabled;
+            return this;
+        }
+        
+        public Builder setTokenizer(Tokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+            return this;
+        }
+        
+        public Builder setSentenceSplitting(boolean enabled) {
+            this.sentenceSplitting = enabled;
+            return this;
+        }
+        
+        public Builder setPreFilterEnabled(boolean enabled) {
+            this.preFilterEnabled = enabled;
+            return this;
+        }
+        
+        public Builder setPreFilterPassThreshold(float threshold) {
+            this.preFilterPassThreshold = threshold;
+            return this;
+        }
+        
+        public InferenceConfig build() {
+            return new InferenceConfig(this);
+        }
+    }
+}
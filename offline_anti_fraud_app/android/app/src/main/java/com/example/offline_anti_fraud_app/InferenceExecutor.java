@@ -0,0 +1,201 @@
+package com.example.offline_anti_fraud_app;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 推理任务执行器
+ * 在固定数量的专用线程上按提交顺序取出推理任务，队列有界，结果在主线程回传给Flutter；
+ * 只有一个线程时任务严格串行，需要保持先后顺序的任务（流式追加与评分）应提交到单线程执行器；
+ * 同一key的新任务到达时，尚未开始执行的旧任务被合并并移出队列，旧请求直接得到新任务的结果；
+ * 关闭时未执行的任务以CANCELLED回复，保证每个请求都有且只有一次回复
+ */
+public class InferenceExecutor {
+    private static final String TAG = "InferenceExecutor";
+    private static final String ERROR_BUSY = "BUSY";
+    private static final String ERROR_CANCELLED = "CANCELLED";
+    private static final Metrics.Histogram QUEUE_WAIT_TIME = Metrics.histogram("inference.queueWaitTime");
+    
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final Handler mainHandler;
+    private final Function<Throwable, String> errorCodeMapper;
+    private final Map<String, Task> pendingByKey = new HashMap<>();
+    
+    // 统计信息
+    private long submittedCount = 0;
+    private long completedCount = 0;
+    private long coalescedCount = 0;
+    private long rejectedCount = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+    private int maxQueueDepth = 0;
+    
+    /**
+     * @param name 线程名前缀
+     * @param threads 并发执行任务的线程数
+     */
+    public InferenceExecutor(String name, int threads, int queueCapacity, Function<Throwable, String> errorCodeMapper) {
+        this.threads = Math.max(1, threads);
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + threadIndex.incrementAndGet());
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.errorCodeMapper = errorCodeMapper;
+    }
+    
+    /**
+     * 提交推理任务
+     * @param key 合并键，为null时不合并（例如追加文本这类不能丢弃的任务）
+     */
+    public synchronized void submit(String key, Callable<Object> work, Result result) {
+        Task task = new Task(key, work, result);
+        Task pending = key != null ? pendingByKey.get(key) : null;
+        if (pending != null) {
+            // 旧任务作废并移出队列腾出位置，它的请求改由新任务回复，新任务排到队尾以保持与其他任务的先后顺序；
+            // 旧任务已被工作线程取出时remove返回false，由superseded标记让它跳过执行
+            pending.superseded = true;
+            executor.remove(pending);
+            task.results.addAll(0, pending.results);
+        }
+        
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // 有旧任务可合并时刚腾出了队列位置，只有未合并的任务会因队列已满被拒绝，或者执行器已关闭
+            rejectedCount++;
+            if (executor.isShutdown()) {
+                Log.w(TAG, "推理执行器已关闭，拒绝任务: " + key);
+                task.replyError(ERROR_CANCELLED, "Inference executor is shut down");
+            } else {
+                Log.w(TAG, "推理队列已满，拒绝任务: " + key);
+                task.replyError(ERROR_BUSY, "Inference queue is full");
+            }
+            if (pending != null) {
+                pendingByKey.remove(key);
+            }
+            return;
+        }
+        
+        submittedCount++;
+        if (pending != null) {
+            coalescedCount++;
+        }
+        if (key != null) {
+            pendingByKey.put(key, task);
+        }
+        maxQueueDepth = Math.max(maxQueueDepth, executor.getQueue().size());
+    }
+    
+    /**
+     * 获取队列深度和等待时间统计
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("threads", threads);
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("maxQueueDepth", maxQueueDepth);
+        stats.put("submitted", submittedCount);
+        stats.put("completed", completedCount);
+        stats.put("coalesced", coalescedCount);
+        stats.put("rejected", rejectedCount);
+        stats.put("avgWaitMs", completedCount > 0 ? totalWaitNanos / completedCount / 1e6 : 0.0);
+        stats.put("maxWaitMs", maxWaitNanos / 1e6);
+        return stats;
+    }
+    
+    /**
+     * 停止执行器：中断正在执行的任务，队列中尚未执行的任务以CANCELLED回复
+     */
+    public void shutdown() {
+        List<Runnable> dropped;
+        synchronized (this) {
+            dropped = executor.shutdownNow();
+            pendingByKey.clear();
+        }
+        for (Runnable runnable : dropped) {
+            Task task = (Task) runnable;
+            if (!task.superseded) {
+                task.replyError(ERROR_CANCELLED, "Inference executor is shut down");
+            }
+        }
+        if (!dropped.isEmpty()) {
+            Log.d(TAG, "推理执行器已关闭，取消排队任务: " + dropped.size());
+        }
+    }
+    
+    private class Task implements Runnable {
+        final String key;
+        final Callable<Object> work;
+        final List<Result> results = new ArrayList<>();
+        final long enqueueTime = System.nanoTime();
+        boolean superseded = false;
+        
+        Task(String key, Callable<Object> work, Result result) {
+            this.key = key;
+            this.work = work;
+            this.results.add(result);
+        }
+        
+        @Override
+        public void run() {
+            synchronized (InferenceExecutor.this) {
+                if (superseded) {
+                    return;
+                }
+                if (key != null && pendingByKey.get(key) == this) {
+                    pendingByKey.remove(key);
+                }
+                long waitNanos = System.nanoTime() - enqueueTime;
+                QUEUE_WAIT_TIME.recordNanos(waitNanos);
+                totalWaitNanos += waitNanos;
+                maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+                completedCount++;
+            }
+            
+            try {
+                final Object value = work.call();
+                mainHandler.post(() -> {
+                    for (Result result : results) {
+                        result.success(value);
+                    }
+                });
+            } catch (Throwable e) {
+                // 包括OutOfMemoryError等Error，否则请求永远得不到回复
+                Log.e(TAG, "推理任务执行失败: " + e.getMessage(), e);
+                replyError(errorCodeMapper.apply(e), e.getMessage());
+            }
+        }
+        
+        /**
+         * 在主线程以错误回复该任务的所有请求
+         */
+        void replyError(String errorCode, String message) {
+            mainHandler.post(() -> {
+                for (Result result : results) {
+                    result.error(errorCode, message, null);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.offline_anti_fraud_app;
+
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热路径指标注册表
+ * 计数器基于LongAdder，延迟直方图按HDR方式分桶（每个2的幂区间再分16个子桶，相对误差不超过6.25%），记录时只有原子自增，不加锁；
+ * 指标按名称注册一次后由调用方保存引用，热路径上不再查表。同时提供热路径详细日志的开关，默认关闭
+ */
+public final class Metrics {
+    private static final String TAG = "Metrics";
+    
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    
+    // 每次推理都会执行的详细日志，关闭时连字符串拼接也省掉
+    private static volatile boolean verbose = false;
+    
+    private Metrics() {
+    }
+    
+    /**
+     * 获取或注册计数器
+     */
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+    
+    /**
+     * 获取或注册延迟直方图
+     */
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+    
+    /**
+     * 获取或注册瞬时值（如队列深度）
+     */
+    public static Gauge gauge(String name) {
+        return gauges.computeIfAbsent(name, key -> new Gauge());
+    }
+    
+    public static boolean isVerbose() {
+        return verbose;
+    }
+    
+    public static void setVerbose(boolean enabled) {
+        verbose = enabled;
+        Log.i(TAG, "热路径详细日志: " + (enabled ? "开启" : "关闭"));
+    }
+    
+    /**
+     * 所有指标的当前值，计数器为数值，直方图为次数、均值、分位数和最大值（毫秒），瞬时值为当前值和最大值
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> counterValues = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            counterValues.put(entry.getKey(), entry.getValue().get());
+        }
+        Map<String, Object> histogramValues = new TreeMap<>();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            histogramValues.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        Map<String, Object> gaugeValues = new TreeMap<>();
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            gaugeValues.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        Map<String, Object> snapshot = new TreeMap<>();
+        snapshot.put("counters", counterValues);
+        snapshot.put("histograms", histogramValues);
+        snapshot.put("gauges", gaugeValues);
+        snapshot.put("timestamp", System.currentTimeMillis());
+        return snapshot;
+    }
+    
+    /**
+     * 清零所有指标，已注册的指标引用仍然有效
+     */
+    public static void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        for (Gauge gauge : gauges.values()) {
+            gauge.reset();
+        }
+    }
+    
+    /**
+     * 把快照写成JSON文件，extra中的内容（如缓存统计）一并写入
+     * @return 写入的文件
+     */
+    public static File dumpTo(File directory, Map<String, Object> extra) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建指标目录: " + directory.getAbsolutePath());
+        }
+        Map<String, Object> content = snapshot();
+        if (extra != null) {
+            content.putAll(extra);
+        }
+        File file = new File(directory, "metrics_" + System.currentTimeMillis() + ".json");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(new JSONObject(content).toString());
+        }
+        Log.i(TAG, "指标已导出: " + file.getAbsolutePath());
+        return file;
+    }
+    
+    /**
+     * 计数器
+     */
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+        
+        public void increment() {
+            value.increment();
+        }
+        
+        public void add(long delta) {
+            value.add(delta);
+        }
+        
+        public long get() {
+            return value.sum();
+        }
+        
+        void reset() {
+            value.reset();
+        }
+    }
+    
+    /**
+     * 瞬时值，同时记录出现过的最大值
+     */
+    public static final class Gauge {
+        private final AtomicLong value = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+        
+        public void set(long newValue) {
+            value.set(newValue);
+            long current;
+            while (newValue > (current = max.get()) && !max.compareAndSet(current, newValue)) {
+                // 竞争失败时重读最大值
+            }
+        }
+        
+        public long get() {
+            return value.get();
+        }
+        
+        public Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new TreeMap<>();
+            snapshot.put("value", value.get());
+            snapshot.put("max", max.get());
+            return snapshot;
+        }
+        
+        /**
+         * 只清零最大值，当前值仍反映实际状态
+         */
+        void reset() {
+            max.set(value.get());
+        }
+    }
+    
+    /**
+     * 延迟直方图，以微秒为单位分桶
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+        private static final int MAX_EXPONENT = 36;  // 最大约19小时，更大的值计入最后一个桶
+        private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+        private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_EXPONENT - SUB_BUCKET_BITS + 2);
+        
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+        private final AtomicLong maxMicros = new AtomicLong();
+        
+        Histogram() {
+        }
+        
+        public void recordNanos(long nanos) {
+            long micros = Math.min(MAX_VALUE, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+            buckets.incrementAndGet(bucketIndex(micros));
+            count.increment();
+            totalMicros.add(micros);
+            long max;
+            while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+                // 竞争失败时重读最大值
+            }
+        }
+        
+        /**
+         * 记录从startNanos（System.nanoTime）到现在的耗时
+         */
+        public void recordSince(long startNanos) {
+            recordNanos(System.nanoTime() - startNanos);
+        }
+        
+        public long getCount() {
+            return count.sum();
+        }
+        
+        public Map<String, Object> snapshot() {
+            long[] copy = new long[BUCKET_COUNT];
+            long total = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                copy[i] = buckets.get(i);
+                total += copy[i];
+            }
+            Map<String, Object> snapshot = new TreeMap<>();
+            snapshot.put("count", total);
+            snapshot.put("meanMs", total > 0 ? totalMicros.sum() / 1000.0 / total : 0.0);
+            snapshot.put("p50Ms", percentile(copy, total, 0.50));
+            snapshot.put("p90Ms", percentile(copy, total, 0.90));
+            snapshot.put("p99Ms", percentile(copy, total, 0.99));
+            snapshot.put("maxMs", maxMicros.get() / 1000.0);
+            return snapshot;
+        }
+        
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            totalMicros.reset();
+            maxMicros.set(0);
+        }
+        
+        /**
+         * 返回分位数所在桶的中点（毫秒）
+         */
+        private static double percentile(long[] copy, long total, double quantile) {
+            if (total == 0) {
+                return 0.0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < copy.length; i++) {
+                seen += copy[i];
+                if (seen >= rank) {
+                    return (bucketLowerBound(i) + bucketWidth(i) / 2.0) / 1000.0;
+                }
+            }
+            return bucketLowerBound(copy.length - 1) / 1000.0;
+        }
+        
+        /**
+         * 小于16的值各占一个桶；其余按最高位所在的2的幂区间分组，组内按接下来的4位再分16个子桶
+         */
+        static int bucketIndex(long value) {
+            if (value < SUB_BUCKET_COUNT) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int shift = exponent - SUB_BUCKET_BITS;
+            int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+            return SUB_BUCKET_COUNT * (shift + 1) + subBucket;
+        }
+        
+        static long bucketLowerBound(int index) {
+            if (index < SUB_BUCKET_COUNT) {
+                return index;
+            }
+            int shift = index / SUB_BUCKET_COUNT - 1;
+            return (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        }
+        
+        static long bucketWidth(int index) {
+            return index < SUB_BUCKET_COUNT ? 1 : 1L << (index / SUB_BUCKET_COUNT - 1);
+        }
+    }
+}
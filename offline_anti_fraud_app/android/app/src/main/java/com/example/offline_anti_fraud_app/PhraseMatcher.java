@@ -0,0 +1,271 @@
+package com.example.offline_anti_fraud_app;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 诈骗话术短语匹配器
+ * 基于Aho-Corasick自动机，一次扫描即可找出文本中出现的所有短语，耗时与文本长度成线性关系、与短语数量无关；
+ * 根节点的转移使用按字符索引的数组，其余节点的转移按字符排序后二分查找
+ */
+public class PhraseMatcher {
+    private static final String TAG = "PhraseMatcher";
+    private static final int ROOT = 0;
+    
+    private final String[] phrases;
+    private final String[] categories;
+    
+    // 压缩后的转移表：状态s的出边为edgeChars/edgeTargets的[edgeStart[s], edgeStart[s + 1])
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] rootNext;     // 根节点对每个字符的转移，无出边时为ROOT
+    private final int[] fail;
+    private final int[] output;       // 以该状态结尾的短语下标，没有时为-1
+    private final int[] outputLink;   // 沿失败链最近的有输出的状态，没有时为-1
+    
+    /**
+     * 一次匹配
+     */
+    public static class Match {
+        public final String phrase;
+        public final String category;
+        public final int start;   // 在文本中的起始位置（含）
+        public final int end;     // 在文本中的结束位置（不含）
+        
+        public Match(String phrase, String category, int start, int end) {
+            this.phrase = phrase;
+            this.category = category;
+            this.start = start;
+            this.end = end;
+        }
+        
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("phrase", phrase);
+            map.put("category", category);
+            map.put("start", start);
+            map.put("end", end);
+            return map;
+        }
+    }
+    
+    /**
+     * 从短语文件加载，每行“短语”或“短语<TAB>类别”，#开头为注释，重复短语以第一次出现为准
+     */
+    public static PhraseMatcher load(InputStream inputStream) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                String phrase = parts[0].trim();
+                if (phrase.isEmpty()) {
+                    continue;
+                }
+                String category = parts.length > 1 ? parts[1].trim() : "";
+                if (!entries.containsKey(phrase)) {
+                    entries.put(phrase, category);
+                }
+            }
+        }
+        PhraseMatcher matcher = new PhraseMatcher(entries);
+        Log.d(TAG, "短语表加载完成，短语数: " + matcher.size() + ", 状态数: " + matcher.stateCount());
+        return matcher;
+    }
+    
+    /**
+     * @param entries 短语到类别的映射
+     */
+    public PhraseMatcher(Map<String, String> entries) {
+        this.phrases = entries.keySet().toArray(new String[0]);
+        this.categories = entries.values().toArray(new String[0]);
+        
+        // 构建字典树，构建阶段的转移用TreeMap保存，便于之后按字符有序压缩
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> trieOutput = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        trieOutput.add(-1);
+        for (int p = 0; p < phrases.length; p++) {
+            int state = ROOT;
+            for (int i = 0; i < phrases[p].length(); i++) {
+                char c = phrases[p].charAt(i);
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    trieOutput.add(-1);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            trieOutput.set(state, p);
+        }
+        
+        int stateCount = trie.size();
+        this.edgeStart = new int[stateCount + 1];
+        for (int s = 0; s < stateCount; s++) {
+            edgeStart[s + 1] = edgeStart[s] + trie.get(s).size();
+        }
+        this.edgeChars = new char[edgeStart[stateCount]];
+        this.edgeTargets = new int[edgeStart[stateCount]];
+        for (int s = 0; s < stateCount; s++) {
+            int e = edgeStart[s];
+            for (Map.Entry<Character, Integer> edge : trie.get(s).entrySet()) {
+                edgeChars[e] = edge.getKey();
+                edgeTargets[e] = edge.getValue();
+                e++;
+            }
+        }
+        this.rootNext = new int[Character.MAX_VALUE + 1];
+        for (int e = edgeStart[ROOT]; e < edgeStart[ROOT + 1]; e++) {
+            rootNext[edgeChars[e]] = edgeTargets[e];
+        }
+        this.output = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            output[s] = trieOutput.get(s);
+        }
+        
+        // 按层次遍历计算失败链接和输出链接，子节点的失败状态由父节点的失败状态转移得到
+        this.fail = new int[stateCount];
+        this.outputLink = new int[stateCount];
+        outputLink[ROOT] = -1;
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int e = edgeStart[ROOT]; e < edgeStart[ROOT + 1]; e++) {
+            int child = edgeTargets[e];
+            fail[child] = ROOT;
+            outputLink[child] = -1;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int e = edgeStart[state]; e < edgeStart[state + 1]; e++) {
+                int child = edgeTargets[e];
+                int failState = next(fail[state], edgeChars[e]);
+                fail[child] = failState;
+                outputLink[child] = output[failState] >= 0 ? failState : outputLink[failState];
+                queue[tail++] = child;
+            }
+        }
+    }
+    
+    public int size() {
+        return phrases.length;
+    }
+    
+    public int stateCount() {
+        return output.length;
+    }
+    
+    /**
+     * 找出文本中的所有短语（包括互相重叠的），按结束位置排序
+     */
+    public List<Match> findAll(CharSequence text) {
+        List<Match> matches = new ArrayList<>();
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            for (int s = output[state] >= 0 ? state : outputLink[state]; s > ROOT; s = outputLink[s]) {
+                int p = output[s];
+                matches.add(new Match(phrases[p], categories[p], i + 1 - phrases[p].length(), i + 1));
+            }
+        }
+        return matches;
+    }
+    
+    /**
+     * 只统计匹配次数，不创建Match对象
+     */
+    public int countMatches(CharSequence text) {
+        int count = 0;
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            for (int s = output[state] >= 0 ? state : outputLink[state]; s > ROOT; s = outputLink[s]) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 吞吐量基准测试：把样本文本重复拼接到至少targetChars个字符后扫描rounds轮
+     */
+    public Map<String, Object> benchmark(String sample, int targetChars, int rounds) {
+        StringBuilder builder = new StringBuilder(Math.max(targetChars, sample.length()));
+        while (builder.length() < targetChars) {
+            builder.append(sample);
+        }
+        String transcript = builder.toString();
+        
+        // 预热一轮，排除JIT编译的影响
+        countMatches(transcript);
+        
+        long matchCount = 0;
+        long startTime = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            matchCount += countMatches(transcript);
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+        long totalChars = (long) transcript.length() * rounds;
+        
+        Map<String, Object> report = new HashMap<>();
+        report.put("phrases", phrases.length);
+        report.put("states", stateCount());
+        report.put("transcriptChars", transcript.length());
+        report.put("rounds", rounds);
+        report.put("matches", matchCount);
+        report.put("elapsedMs", elapsedNanos / 1e6);
+        report.put("charsPerSec", elapsedNanos > 0 ? totalChars * 1e9 / elapsedNanos : 0.0);
+        Log.d(TAG, "短语匹配基准测试: " + report);
+        return report;
+    }
+    
+    /**
+     * 自动机转移：当前状态没有该字符的出边时沿失败链回退，根节点直接查表
+     */
+    private int next(int state, char c) {
+        while (state != ROOT) {
+            int target = edgeTarget(state, c);
+            if (target >= 0) {
+                return target;
+            }
+            state = fail[state];
+        }
+        return rootNext[c];
+    }
+    
+    private int edgeTarget(int state, char c) {
+        int low = edgeStart[state];
+        int high = edgeStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char key = edgeChars[mid];
+            if (key < c) {
+                low = mid + 1;
+            } else if (key > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+}
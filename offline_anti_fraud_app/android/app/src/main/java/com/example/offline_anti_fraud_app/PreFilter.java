@@ -0,0 +1,131 @@
+package com.example.offline_anti_fraud_app;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一级预筛选器
+ * 基于词索引的线性模型：可疑概率 = sigmoid(bias + 每个词的权重之和)，只需一次数组遍历；
+ * 概率低于放行阈值的文本直接判为正常，其余文本交给BiLSTM模型。
+ * 权重是人工设定的，不是训练得到的，校准方式是让放行条件足够保守：bias为-4时，默认放行阈值0.1对应
+ * 权重之和小于1.8，即只放行不含关键词、或只含一个最弱关键词（权重1.5）的文本，任一权重≥2的关键词都会升级到模型。
+ * 可疑概率只用于放行判断，不与模型概率可比；修改权重或阈值后用FraudDetectionService.evaluatePreFilter
+ * 以模型判定为参照检查漏检率
+ */
+public class PreFilter {
+    private static final String TAG = "PreFilter";
+    private static final String BIAS_KEY = "__bias__";
+    
+    private final float[] weights;   // 按词索引存放的权重
+    private final float bias;
+    private final float passThreshold;
+    private final int keywordCount;
+    
+    // 统计信息
+    private final AtomicLong passedCount = new AtomicLong();
+    private final AtomicLong escalatedCount = new AtomicLong();
+    
+    private PreFilter(float[] weights, float bias, float passThreshold, int keywordCount) {
+        this.weights = weights;
+        this.bias = bias;
+        this.passThreshold = passThreshold;
+        this.keywordCount = keywordCount;
+    }
+    
+    /**
+     * 从权重文件加载，每行“词<TAB>权重”，#开头为注释；不在词表中的词被忽略
+     */
+    public static PreFilter load(InputStream inputStream, VocabIndex vocab, float passThreshold) throws IOException {
+        int maxId = 0;
+        for (int entry = 0; entry < vocab.size(); entry++) {
+            maxId = Math.max(maxId, vocab.idAt(entry));
+        }
+        float[] weights = new float[maxId + 1];
+        float bias = 0f;
+        int keywordCount = 0;
+        
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                if (parts.length != 2) {
+                    Log.w(TAG, "忽略格式错误的权重行: " + line);
+                    continue;
+                }
+                float weight;
+                try {
+                    weight = Float.parseFloat(parts[1].trim());
+                } catch (NumberFormatException e) {
+                    Log.w(TAG, "忽略格式错误的权重行: " + line);
+                    continue;
+                }
+                if (BIAS_KEY.equals(parts[0])) {
+                    bias = weight;
+                    continue;
+                }
+                int idx = vocab.get(parts[0]);
+                if (idx == VocabIndex.NOT_FOUND) {
+                    Log.w(TAG, "关键词不在词表中，已忽略: " + parts[0]);
+                    continue;
+                }
+                weights[idx] = weight;
+                keywordCount++;
+            }
+        }
+        Log.d(TAG, "预筛选权重加载完成，关键词数: " + keywordCount + ", bias: " + bias + ", 放行阈值: " + passThreshold);
+        return new PreFilter(weights, bias, passThreshold, keywordCount);
+    }
+    
+    /**
+     * 计算tokenIds前length个词的可疑概率
+     */
+    public float score(long[] tokenIds, int length) {
+        float logit = bias;
+        for (int i = 0; i < length; i++) {
+            long idx = tokenIds[i];
+            if (idx >= 0 && idx < weights.length) {
+                logit += weights[(int) idx];
+            }
+        }
+        return (float) (1.0 / (1.0 + Math.exp(-logit)));
+    }
+    
+    /**
+     * 判断是否可以直接放行，并计入放行/升级统计
+     */
+    public boolean shouldPass(float probability) {
+        if (probability < passThreshold) {
+            passedCount.incrementAndGet();
+            return true;
+        }
+        escalatedCount.incrementAndGet();
+        return false;
+    }
+    
+    /**
+     * 获取放行和升级到二级模型的次数及比例
+     */
+    public Map<String, Object> getStats() {
+        long passed = passedCount.get();
+        long escalated = escalatedCount.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("keywords", keywordCount);
+        stats.put("passThreshold", passThreshold);
+        stats.put("passed", passed);
+        stats.put("escalated", escalated);
+        stats.put("passRatio", passed + escalated > 0 ? (double) passed / (passed + escalated) : 0.0);
+        return stats;
+    }
+}
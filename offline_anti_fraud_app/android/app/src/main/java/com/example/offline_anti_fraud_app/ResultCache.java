@@ -0,0 +1,114 @@
+package com.example.offline_anti_fraud_app;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 推理结果LRU缓存
+ * 以词索引序列的64位哈希为键，条目数有上限，超出时淘汰最久未使用的结果；
+ * 缓存中保存的是结果副本，调用方修改返回值不会影响缓存；只缓存模型推理结果，预筛选放行的结果不写入
+ */
+public class ResultCache {
+    private final int capacity;
+    private final LinkedHashMap<Long, FraudDetectionService.FraudResult> entries;
+    
+    // 统计信息
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+    
+    public ResultCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Long, FraudDetectionService.FraudResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, FraudDetectionService.FraudResult> eldest) {
+                if (size() > ResultCache.this.capacity) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * 计算tokenIds前length个词索引的64位哈希，长度也参与哈希
+     */
+    public static long hash(long[] tokenIds, int length) {
+        return hash(tokenIds, 0, length);
+    }
+    
+    /**
+     * 计算tokenIds[offset, offset + length)的64位哈希，与从0开始的同一序列哈希相同
+     */
+    public static long hash(long[] tokenIds, int offset, int length) {
+        long h = 0xCBF29CE484222325L ^ length;
+        for (int i = offset; i < offset + length; i++) {
+            h = (h ^ tokenIds[i]) * 0x100000001B3L;
+        }
+        // 末尾再做一次混合，使低位也充分依赖所有输入
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    /**
+     * 查询缓存，未命中时返回null
+     */
+    public synchronized FraudDetectionService.FraudResult get(long key) {
+        FraudDetectionService.FraudResult result = entries.get(key);
+        if (result == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return copyOf(result);
+    }
+    
+    /**
+     * 查询缓存，命中时把结果复制到out并返回true，不创建新的结果对象
+     */
+    public synchronized boolean getInto(long key, FraudDetectionService.FraudResult out) {
+        FraudDetectionService.FraudResult result = entries.get(key);
+        if (result == null) {
+            missCount++;
+            return false;
+        }
+        hitCount++;
+        out.set(result.predLabel, result.predProb, result.normalProb, result.fraudProb);
+        return true;
+    }
+    
+    public synchronized void put(long key, FraudDetectionService.FraudResult result) {
+        if (capacity > 0) {
+            entries.put(key, copyOf(result));
+        }
+    }
+    
+    public synchronized void clear() {
+        entries.clear();
+    }
+    
+    /**
+     * 获取命中、未命中和淘汰次数等统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", entries.size());
+        stats.put("capacity", capacity);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictionCount);
+        long lookups = hitCount + missCount;
+        stats.put("hitRate", lookups > 0 ? (double) hitCount / lookups : 0.0);
+        return stats;
+    }
+    
+    private static FraudDetectionService.FraudResult copyOf(FraudDetectionService.FraudResult result) {
+        return new FraudDetectionService.FraudResult(result.predLabel, result.predProb, result.normalProb, result.fraudProb);
+    }
+}
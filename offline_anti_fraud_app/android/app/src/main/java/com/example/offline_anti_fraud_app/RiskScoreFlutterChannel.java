@@ -0,0 +1,264 @@
+package com.example.offline_anti_fraud_app;
+
+import io.flutter.embedding.engine.FlutterEngine;
+import io.flutter.plugin.common.EventChannel;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实时风险分数推送通道
+ * 直接接收AsrService识别完成的句子，追加到FraudDetectionService的流式会话并打分，通过EventChannel主动推送给Flutter；
+ * 短时间内连续完成的句子先去抖合并再打分，打分期间到达的句子排队等待下一次合并打分，每个事件附带从语音结束到出分的延迟
+ */
+public class RiskScoreFlutterChannel implements EventChannel.StreamHandler, AsrService.SentenceListener {
+    private static final String TAG = "RiskScoreFlutterChannel";
+    private static final String CHANNEL_NAME = "com.example.offline_anti_fraud_app/risk_scores";
+    
+    // 去抖参数：最后一句到达后等待DEBOUNCE_MS再打分，但从第一句到达起最多等待MAX_DEBOUNCE_MS
+    private static final long DEBOUNCE_MS = 200;
+    private static final long MAX_DEBOUNCE_MS = 800;
+    // 等待打分的句子上限，超出时丢弃最早的句子（流式会话窗口只保留最近MAX_SEQ_LEN个词，过早的句子本就会被挤出）
+    private static final int MAX_PENDING_SENTENCES = 32;
+    
+    // 错误码常量
+    private static final String ERROR_NOT_INITIALIZED = "NOT_INITIALIZED";
+    private static final String ERROR_PREDICT_FAILED = "PREDICT_FAILED";
+    
+    private final FraudDetectionService fraudDetectionService;
+    private final EventChannel channel;
+    private final Handler mainHandler; // 主线程Handler，EventSink只能在主线程调用
+    private final ScheduledExecutorService scorer; // 去抖定时和打分都在这一个线程执行，打分未完成时新的打分自然排队
+    private volatile EventChannel.EventSink eventSink;
+    
+    // 等待打分的句子，由this保护
+    private final List<PendingSentence> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private long firstPendingNanos;
+    
+    // 流式会话ID，只在scorer线程访问
+    private int streamId = -1;
+    
+    // 统计信息，由this保护
+    private long eventCount = 0;
+    private long sentenceCount = 0;
+    private long droppedSentences = 0;
+    private long errorCount = 0;
+    private double totalAudioToScoreMs = 0;
+    private double maxAudioToScoreMs = 0;
+    private double totalInferenceMs = 0;
+    private double maxInferenceMs = 0;
+    
+    /**
+     * 等待打分的句子
+     */
+    private static class PendingSentence {
+        final String text;
+        final long audioEndNanos;   // 该句语音结束的本地时间
+        final long receivedNanos;   // 识别结果到达的本地时间
+        
+        PendingSentence(String text, long audioEndNanos, long receivedNanos) {
+            this.text = text;
+            this.audioEndNanos = audioEndNanos;
+            this.receivedNanos = receivedNanos;
+        }
+    }
+    
+    public RiskScoreFlutterChannel(FlutterEngine flutterEngine, FraudDetectionService fraudDetectionService) {
+        this.fraudDetectionService = fraudDetectionService;
+        this.channel = new EventChannel(flutterEngine.getDartExecutor().getBinaryMessenger(), CHANNEL_NAME);
+        this.channel.setStreamHandler(this);
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.scorer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "RiskScorer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @Override
+    public void onListen(Object arguments, EventChannel.EventSink events) {
+        eventSink = events;
+        Log.d(TAG, "Flutter开始订阅风险分数");
+    }
+    
+    @Override
+    public void onCancel(Object arguments) {
+        eventSink = null;
+        synchronized (this) {
+            pending.clear();
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+        }
+        // 订阅结束即一次监听结束，关闭流式会话，下次订阅从空白上下文开始
+        if (!scorer.isShutdown()) {
+            scorer.execute(this::closeStream);
+        }
+        Log.d(TAG, "Flutter取消订阅风险分数");
+    }
+    
+    @Override
+    public void onSentenceCompleted(String transcript, long audioEndNanos) {
+        if (eventSink == null || transcript == null || transcript.trim().isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            pending.add(new PendingSentence(transcript.trim(), audioEndNanos, now));
+            if (pending.size() > MAX_PENDING_SENTENCES) {
+                pending.remove(0);
+                droppedSentences++;
+            }
+            
+            if (scheduledFlush == null) {
+                firstPendingNanos = now;
+                scheduledFlush = scorer.schedule(this::flush, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            // 已有待执行的打分：未超过最长等待时间则推迟；任务已开始执行时不必重排，本句会在该次或下一次打分中处理
+            long waitedMs = TimeUnit.NANOSECONDS.toMillis(now - firstPendingNanos);
+            if (waitedMs < MAX_DEBOUNCE_MS && scheduledFlush.cancel(false)) {
+                long delay = Math.min(DEBOUNCE_MS, MAX_DEBOUNCE_MS - waitedMs);
+                scheduledFlush = scorer.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+    
+    /**
+     * 取出所有等待中的句子，一次追加到流式会话后打分并推送
+     */
+    private void flush() {
+        List<PendingSentence> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            scheduledFlush = null;
+        }
+        if (batch.isEmpty() || eventSink == null) {
+            return;
+        }
+        
+        long startNanos = System.nanoTime();
+        try {
+            if (streamId < 0) {
+                streamId = fraudDetectionService.openStream();
+            }
+            List<String> sentences = new ArrayList<>();
+            for (PendingSentence sentence : batch) {
+                fraudDetectionService.appendToStream(streamId, sentence.text);
+                sentences.add(sentence.text);
+            }
+            FraudDetectionService.FraudResult result = fraudDetectionService.scoreStream(streamId);
+            long endNanos = System.nanoTime();
+            
+            // 延迟按批次中最早的一句计算，即该批次最坏情况
+            PendingSentence oldest = batch.get(0);
+            double audioToScoreMs = (endNanos - oldest.audioEndNanos) / 1e6;
+            double inferenceMs = (endNanos - startNanos) / 1e6;
+            Map<String, Object> latency = new HashMap<>();
+            latency.put("audioToScoreMs", audioToScoreMs);
+            latency.put("asrMs", (oldest.receivedNanos - oldest.audioEndNanos) / 1e6);
+            latency.put("queueMs", (startNanos - oldest.receivedNanos) / 1e6);
+            latency.put("inferenceMs", inferenceMs);
+            recordEvent(batch.size(), audioToScoreMs, inferenceMs);
+            
+            Map<String, Object> event = new HashMap<>();
+            event.put("predLabel", result.predLabel);
+            event.put("predProb", result.predProb);
+            event.put("normalProb", result.normalProb);
+            event.put("fraudProb", result.fraudProb);
+            event.put("preFiltered", result.preFiltered);
+            event.put("sentences", sentences);
+            event.put("latency", latency);
+            postSuccess(event);
+        } catch (IllegalStateException e) {
+            // 模型未初始化或已释放，关闭会话，下次重新打开
+            closeStream();
+            recordError();
+            postError(ERROR_NOT_INITIALIZED, e.getMessage());
+        } catch (Exception e) {
+            Log.e(TAG, "风险打分失败: " + e.getMessage(), e);
+            // 会话中可能只追加了部分句子，关闭它，下次重新打开
+            closeStream();
+            recordError();
+            postError(ERROR_PREDICT_FAILED, e.getMessage());
+        }
+    }
+    
+    private void closeStream() {
+        if (streamId >= 0) {
+            fraudDetectionService.closeStream(streamId);
+            streamId = -1;
+        }
+    }
+    
+    private void postSuccess(Map<String, Object> event) {
+        mainHandler.post(() -> {
+            EventChannel.EventSink sink = eventSink;
+            if (sink != null) {
+                sink.success(event);
+            }
+        });
+    }
+    
+    private void postError(String code, String message) {
+        mainHandler.post(() -> {
+            EventChannel.EventSink sink = eventSink;
+            if (sink != null) {
+                sink.error(code, message, null);
+            }
+        });
+    }
+    
+    private synchronized void recordEvent(int sentences, double audioToScoreMs, double inferenceMs) {
+        eventCount++;
+        sentenceCount += sentences;
+        totalAudioToScoreMs += audioToScoreMs;
+        maxAudioToScoreMs = Math.max(maxAudioToScoreMs, audioToScoreMs);
+        totalInferenceMs += inferenceMs;
+        maxInferenceMs = Math.max(maxInferenceMs, inferenceMs);
+    }
+    
+    private synchronized void recordError() {
+        errorCount++;
+    }
+    
+    /**
+     * 获取推送次数、合并与丢弃的句子数和端到端延迟统计
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("events", eventCount);
+        stats.put("sentences", sentenceCount);
+        stats.put("coalescedSentences", sentenceCount - eventCount);
+        stats.put("droppedSentences", droppedSentences);
+        stats.put("pendingSentences", pending.size());
+        stats.put("errors", errorCount);
+        stats.put("avgAudioToScoreMs", eventCount > 0 ? totalAudioToScoreMs / eventCount : 0.0);
+        stats.put("maxAudioToScoreMs", maxAudioToScoreMs);
+        stats.put("avgInferenceMs", eventCount > 0 ? totalInferenceMs / eventCount : 0.0);
+        stats.put("maxInferenceMs", maxInferenceMs);
+        return stats;
+    }
+    
+    public void dispose() {
+        eventSink = null;
+        channel.setStreamHandler(null);
+        scorer.shutdownNow();
+        if (streamId >= 0) {
+            fraudDetectionService.closeStream(streamId);
+        }
+        Log.d(TAG, "Disposed RiskScoreFlutterChannel");
+    }
+}
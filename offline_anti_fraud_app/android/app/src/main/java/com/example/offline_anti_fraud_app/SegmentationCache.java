@@ -0,0 +1,79 @@
+package com.example.offline_anti_fraud_app;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 分句分词结果LRU缓存
+ * 以句子文本为键缓存分词后的词索引，ASR按句回传文本，累积的历史文本中已出现的句子不必重新分词；
+ * 按缓存的总词数限制内存，超出时淘汰最久未使用的句子
+ */
+public class SegmentationCache {
+    private final int maxTokens;
+    private final LinkedHashMap<String, long[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private int cachedTokens = 0;
+    
+    // 统计信息
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+    
+    public SegmentationCache(int maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+    
+    /**
+     * 查询句子的词索引，未命中时返回null；返回的数组不能修改
+     */
+    public synchronized long[] get(String sentence) {
+        long[] tokenIds = entries.get(sentence);
+        if (tokenIds == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return tokenIds;
+    }
+    
+    public synchronized void put(String sentence, long[] tokenIds) {
+        if (tokenIds.length > maxTokens) {
+            return;
+        }
+        long[] previous = entries.put(sentence, tokenIds);
+        if (previous != null) {
+            cachedTokens -= previous.length;
+        }
+        cachedTokens += tokenIds.length;
+        
+        Iterator<Map.Entry<String, long[]>> iterator = entries.entrySet().iterator();
+        while (cachedTokens > maxTokens && iterator.hasNext()) {
+            Map.Entry<String, long[]> eldest = iterator.next();
+            cachedTokens -= eldest.getValue().length;
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+    
+    public synchronized void clear() {
+        entries.clear();
+        cachedTokens = 0;
+    }
+    
+    /**
+     * 获取命中、未命中和淘汰次数等统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sentences", entries.size());
+        stats.put("tokens", cachedTokens);
+        stats.put("maxTokens", maxTokens);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictionCount);
+        long lookups = hitCount + missCount;
+        stats.put("hitRate", lookups > 0 ? (double) hitCount / lookups : 0.0);
+        return stats;
+    }
+}
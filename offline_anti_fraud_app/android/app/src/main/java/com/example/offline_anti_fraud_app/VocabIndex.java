@@ -0,0 +1,241 @@
+package com.example.offline_anti_fraud_app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * 紧凑词表索引
+ * 所有词以UTF-16连续存放在一个char数组中，通过开放寻址哈希表定位，
+ * 查询返回原始int索引，支持直接对CharSequence片段查询而不创建子串
+ *
+ * 二进制格式（小端序，由app/build.gradle的generateVocabBinary任务生成）：
+ * magic, version, size, arenaSize, tableSize, offsets[size + 1], ids[size], hashes[size], table[tableSize], arena[arenaSize]
+ * 其中hashes和table依赖hash()的实现，修改哈希函数时必须同步修改构建脚本并升级版本号
+ */
+public class VocabIndex {
+    public static final int NOT_FOUND = -1;
+    
+    private static final int BINARY_MAGIC = 0x564F4342; // "VOCB"
+    private static final int BINARY_VERSION = 1;
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+    
+    private char[] arena;     // 所有词的字符连续存放
+    private int arenaSize = 0;
+    private int[] offsets;    // 第i个词在arena中的起始位置，offsets[i + 1]为结束位置
+    private int[] ids;        // 第i个词的索引
+    private int[] hashes;     // 第i个词的哈希值，用于扩容和快速比较
+    private int[] table;      // 哈希槽，存放词序号+1，0表示空槽
+    private int mask;
+    private int size = 0;
+    private int maxWordLength = 0;
+    
+    public VocabIndex(int expectedSize) {
+        int capacity = Math.max(expectedSize, 16);
+        this.arena = new char[capacity * 3];
+        this.offsets = new int[capacity + 1];
+        this.ids = new int[capacity];
+        this.hashes = new int[capacity];
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.table = new int[tableSize];
+        this.mask = tableSize - 1;
+    }
+    
+    private VocabIndex(char[] arena, int[] offsets, int[] ids, int[] hashes, int[] table, int size) {
+        this.arena = arena;
+        this.arenaSize = arena.length;
+        this.offsets = offsets;
+        this.ids = ids;
+        this.hashes = hashes;
+        this.table = table;
+        this.mask = table.length - 1;
+        this.size = size;
+        for (int i = 0; i < size; i++) {
+            maxWordLength = Math.max(maxWordLength, offsets[i + 1] - offsets[i]);
+        }
+    }
+    
+    /**
+     * 从预编译的二进制词表加载，只做整块数组拷贝，不需要解析和重新哈希
+     */
+    public static VocabIndex fromBinary(ByteBuffer buffer) throws IOException {
+        ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (data.remaining() < 5 * Integer.BYTES || data.getInt() != BINARY_MAGIC) {
+            throw new IOException("二进制词表格式错误");
+        }
+        int version = data.getInt();
+        if (version != BINARY_VERSION) {
+            throw new IOException("不支持的二进制词表版本: " + version);
+        }
+        int size = data.getInt();
+        int arenaSize = data.getInt();
+        int tableSize = data.getInt();
+        if (size < 0 || arenaSize < 0 || Integer.bitCount(tableSize) != 1 || tableSize < size * 2) {
+            throw new IOException("二进制词表头部数据错误");
+        }
+        
+        long expectedBytes = (long) (size + 1 + size + size + tableSize) * Integer.BYTES + (long) arenaSize * Character.BYTES;
+        if (data.remaining() < expectedBytes) {
+            throw new IOException("二进制词表数据不完整");
+        }
+        
+        int[] offsets = new int[size + 1];
+        int[] ids = new int[size];
+        int[] hashes = new int[size];
+        int[] table = new int[tableSize];
+        IntBuffer ints = data.asIntBuffer();
+        ints.get(offsets).get(ids).get(hashes).get(table);
+        data.position(data.position() + ints.position() * Integer.BYTES);
+        
+        char[] arena = new char[arenaSize];
+        data.asCharBuffer().get(arena);
+        
+        return new VocabIndex(arena, offsets, ids, hashes, table, size);
+    }
+    
+    /**
+     * 添加词及其索引，词已存在时覆盖索引
+     */
+    public void put(CharSequence word, int id) {
+        int length = word.length();
+        int hash = hash(word, 0, length);
+        int slot = findSlot(word, 0, length, hash);
+        if (table[slot] != 0) {
+            ids[table[slot] - 1] = id;
+            return;
+        }
+        
+        if (size == ids.length) {
+            growEntries();
+            // 扩容后槽位可能变化，重新定位
+            slot = findSlot(word, 0, length, hash);
+        }
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+        }
+        for (int i = 0; i < length; i++) {
+            arena[arenaSize + i] = word.charAt(i);
+        }
+        offsets[size] = arenaSize;
+        arenaSize += length;
+        offsets[size + 1] = arenaSize;
+        ids[size] = id;
+        hashes[size] = hash;
+        table[slot] = size + 1;
+        size++;
+        maxWordLength = Math.max(maxWordLength, length);
+    }
+    
+    /**
+     * 查询词的索引，不存在时返回NOT_FOUND
+     */
+    public int get(CharSequence word) {
+        return get(word, 0, word.length());
+    }
+    
+    /**
+     * 查询text中[start, end)片段的索引，不存在时返回NOT_FOUND
+     */
+    public int get(CharSequence text, int start, int end) {
+        int entry = table[findSlot(text, start, end, hash(text, start, end))];
+        return entry != 0 ? ids[entry - 1] : NOT_FOUND;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * 第entry个词（按加入顺序，0 <= entry < size()）的文本
+     */
+    public String wordAt(int entry) {
+        return new String(arena, offsets[entry], offsets[entry + 1] - offsets[entry]);
+    }
+    
+    /**
+     * 第entry个词（按加入顺序，0 <= entry < size()）的索引
+     */
+    public int idAt(int entry) {
+        return ids[entry];
+    }
+    
+    /**
+     * 最长词的字符数，分词时据此限制匹配窗口
+     */
+    public int maxWordLength() {
+        return maxWordLength;
+    }
+    
+    /**
+     * 估算占用的堆内存字节数（不含对象头）
+     */
+    public long estimatedMemoryBytes() {
+        return (long) arena.length * Character.BYTES
+                + (long) (offsets.length + ids.length + hashes.length + table.length) * Integer.BYTES;
+    }
+    
+    private int findSlot(CharSequence text, int start, int end, int hash) {
+        int slot = hash & mask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return slot;
+            }
+            int index = entry - 1;
+            if (hashes[index] == hash && matches(index, text, start, end)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    
+    private boolean matches(int index, CharSequence text, int start, int end) {
+        int offset = offsets[index];
+        int length = offsets[index + 1] - offset;
+        if (length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (arena[offset + i] != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void growEntries() {
+        int capacity = ids.length * 2;
+        offsets = Arrays.copyOf(offsets, capacity + 1);
+        ids = Arrays.copyOf(ids, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        
+        // 保持负载因子不超过0.5
+        int tableSize = table.length;
+        while (tableSize < capacity * 2) {
+            tableSize <<= 1;
+        }
+        if (tableSize != table.length) {
+            table = new int[tableSize];
+            mask = tableSize - 1;
+            for (int i = 0; i < size; i++) {
+                int slot = hashes[i] & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = i + 1;
+            }
+        }
+    }
+    
+    private static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        // 打散低位，避免线性探测聚集
+        h *= HASH_MULTIPLIER;
+        return h ^ (h >>> 16);
+    }
+}
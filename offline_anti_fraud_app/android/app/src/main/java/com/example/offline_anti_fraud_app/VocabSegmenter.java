@@ -0,0 +1,211 @@
+package com.example.offline_anti_fraud_app;
+
+import com.huaban.analysis.jieba.WordDictionary;
+
+import java.util.Arrays;
+
+/**
+ * 基于模型词表的快速分词器
+ * 直接在词表上分词，通过VocabIndex按字符区间查询，不创建中间String，分词结果直接写成词索引；
+ * 连续的字母数字、连续的空白各作为一个词，与Jieba对非中文片段的处理一致。
+ * 两种模式：正向最大匹配；或以Jieba词典词频为权重，在只含词表词的有向无环图上求最大概率路径
+ */
+public class VocabSegmenter {
+    // 中文词最大匹配长度，词表中更长的条目基本都是号码等字母数字串，由连续字母数字规则处理
+    private static final int MAX_MATCH_LENGTH = 8;
+    
+    private final VocabIndex vocab;
+    private final int maxMatchLength;
+    private final float[] logProbs;   // 按词索引存放的对数词频，为null时使用正向最大匹配
+    private final float minLogProb;   // 不在Jieba词典中的词使用的对数词频
+    // 最大概率模式动态规划用的每线程数组，按文本长度增长后复用
+    private final ThreadLocal<PathScratch> pathScratch = ThreadLocal.withInitial(PathScratch::new);
+    
+    public VocabSegmenter(VocabIndex vocab) {
+        this(vocab, null, 0f);
+    }
+    
+    private VocabSegmenter(VocabIndex vocab, float[] logProbs, float minLogProb) {
+        this.vocab = vocab;
+        this.maxMatchLength = Math.max(1, Math.min(MAX_MATCH_LENGTH, vocab.maxWordLength()));
+        this.logProbs = logProbs;
+        this.minLogProb = minLogProb;
+    }
+    
+    /**
+     * 创建最大概率模式的分词器，词权重取自Jieba词典（JiebaSegmenter创建后词典已加载）
+     */
+    public static VocabSegmenter withJiebaFrequencies(VocabIndex vocab) {
+        WordDictionary dictionary = WordDictionary.getInstance();
+        // jieba-analysis 1.0.2没有公开最小词频，freqs中存的就是对数词频，取其最小值
+        double minFreq = 0;
+        for (Double freq : dictionary.freqs.values()) {
+            minFreq = Math.min(minFreq, freq);
+        }
+        float minLogProb = (float) minFreq;
+
+        int maxId = 0;
+        for (int entry = 0; entry < vocab.size(); entry++) {
+            maxId = Math.max(maxId, vocab.idAt(entry));
+        }
+        float[] logProbs = new float[maxId + 1];
+        Arrays.fill(logProbs, minLogProb);
+        for (int entry = 0; entry < vocab.size(); entry++) {
+            String word = vocab.wordAt(entry);
+            if (dictionary.containsWord(word)) {
+                logProbs[vocab.idAt(entry)] = dictionary.getFreq(word).floatValue();
+            }
+        }
+        return new VocabSegmenter(vocab, logProbs, minLogProb);
+    }
+    
+    public boolean isMaxProbability() {
+        return logProbs != null;
+    }
+    
+    /**
+     * 分词并把词索引写入out[offset]开始的位置，未登录词写为unkId，写满out时截断
+     * @return 写入的词数
+     */
+    public int segment(CharSequence text, long[] out, int offset, long unkId) {
+        int length = text.length();
+        int[] next = logProbs != null ? bestPath(text, length) : null;
+        int count = 0;
+        int start = 0;
+        while (start < length && offset + count < out.length) {
+            int end = next != null ? next[start] : nextTokenEnd(text, start, length);
+            int idx = vocab.get(text, start, end);
+            out[offset + count] = idx != VocabIndex.NOT_FOUND ? idx : unkId;
+            count++;
+            start = end;
+        }
+        return count;
+    }
+    
+    /**
+     * 分词并记录每个词的结束位置，用于与Jieba逐词比对
+     * @return 词数
+     */
+    public int segmentBoundaries(CharSequence text, int[] ends) {
+        int length = text.length();
+        int[] next = logProbs != null ? bestPath(text, length) : null;
+        int count = 0;
+        int start = 0;
+        while (start < length && count < ends.length) {
+            start = next != null ? next[start] : nextTokenEnd(text, start, length);
+            ends[count++] = start;
+        }
+        return count;
+    }
+    
+    /**
+     * 从句尾向前动态规划，next[i]为最大概率路径上从i开始的词的结束位置
+     * 返回的数组属于当前线程，下次调用时被覆盖
+     */
+    private int[] bestPath(CharSequence text, int length) {
+        PathScratch scratch = pathScratch.get();
+        scratch.ensureCapacity(length);
+        int[] next = scratch.next;
+        double[] route = scratch.route;
+        route[length] = 0;
+        for (int start = length - 1; start >= 0; start--) {
+            int runEnd = asciiOrWhitespaceRunEnd(text, start, length);
+            if (runEnd > start) {
+                next[start] = runEnd;
+                route[start] = route[runEnd] + weight(text, start, runEnd);
+                continue;
+            }
+            
+            // 单字总是一条候选边，保证路径存在
+            int bestEnd = start + 1;
+            double best = route[start + 1] + weight(text, start, start + 1);
+            int limit = hanMatchLimit(text, start, length);
+            for (int end = start + 2; end <= limit; end++) {
+                int idx = vocab.get(text, start, end);
+                if (idx == VocabIndex.NOT_FOUND) {
+                    continue;
+                }
+                double candidate = route[end] + logProbs[idx];
+                if (candidate > best) {
+                    best = candidate;
+                    bestEnd = end;
+                }
+            }
+            next[start] = bestEnd;
+            route[start] = best;
+        }
+        return next;
+    }
+    
+    private float weight(CharSequence text, int start, int end) {
+        int idx = vocab.get(text, start, end);
+        return idx != VocabIndex.NOT_FOUND ? logProbs[idx] : minLogProb;
+    }
+    
+    /**
+     * 正向最大匹配：计算从start开始的词的结束位置
+     */
+    int nextTokenEnd(CharSequence text, int start, int length) {
+        int runEnd = asciiOrWhitespaceRunEnd(text, start, length);
+        if (runEnd > start) {
+            return runEnd;
+        }
+        
+        // 从最长窗口开始匹配
+        for (int end = hanMatchLimit(text, start, length); end > start + 1; end--) {
+            if (vocab.get(text, start, end) != VocabIndex.NOT_FOUND) {
+                return end;
+            }
+        }
+        return start + 1;
+    }
+    
+    /**
+     * start处是字母数字或空白时返回该连续片段的结束位置，否则返回start
+     */
+    private static int asciiOrWhitespaceRunEnd(CharSequence text, int start, int length) {
+        char c = text.charAt(start);
+        int end = start;
+        if (isAsciiLetterOrDigit(c)) {
+            while (end < length && isAsciiLetterOrDigit(text.charAt(end))) {
+                end++;
+            }
+        } else if (Character.isWhitespace(c)) {
+            while (end < length && Character.isWhitespace(text.charAt(end))) {
+                end++;
+            }
+        }
+        return end;
+    }
+    
+    /**
+     * 中文词匹配窗口的结束位置，窗口不超过maxMatchLength且不跨入字母数字或空白
+     */
+    private int hanMatchLimit(CharSequence text, int start, int length) {
+        int limit = start + 1;
+        while (limit < length && limit - start < maxMatchLength
+                && !isAsciiLetterOrDigit(text.charAt(limit)) && !Character.isWhitespace(text.charAt(limit))) {
+            limit++;
+        }
+        return limit;
+    }
+    
+    static boolean isAsciiLetterOrDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+    
+    /**
+     * bestPath的工作数组，只在当前线程内使用
+     */
+    private static class PathScratch {
+        int[] next = new int[0];
+        double[] route = new double[1];
+        
+        void ensureCapacity(int length) {
+            if (next.length < length) {
+                next = new int[Math.max(length, next.length * 2)];
+                route = new double[next.length + 1];
+            }
+        }
+    }
+}
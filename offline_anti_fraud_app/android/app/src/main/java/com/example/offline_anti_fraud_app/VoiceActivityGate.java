@@ -0,0 +1,369 @@
+package com.example.offline_anti_fraud_app;
+
+import android.os.Debug;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地语音活动检测门控
+ * 位于录音线程与发送队列之间，按每帧的能量和过零率判断是否有人说话，长时间静音不再上传，节省上行流量、编码CPU和射频功耗。
+ * 能量高于自适应噪声底一定幅度即判为语音；能量只略高但过零率高的帧按清辅音处理，避免句首的"s""sh"等音被当成静音。
+ * 静音期间最近PRE_ROLL_MS的音频保留在预录缓冲区，检测到语音时先补发，句首不被截断；
+ * 语音结束后继续发送HANGOVER_MS，保证服务端VAD（500ms静音）能正常判定句子结束。
+ * 噪声底的初始值只是猜测，开始的WARMUP_MS只学习噪声底不做判定，否则略高于初始值的背景噪声会被当成清辅音，长时间误发送；
+ * 这段音频留在预录缓冲区，录音一开始就说话时随后补发。只在录音线程调用，循环内不分配对象；
+ * 停止录音或关闭门控时由其他线程调用reset()释放预录缓冲区，两者以本对象为锁，录音线程上没有竞争
+ */
+public class VoiceActivityGate implements AudioRecorder.AudioListener {
+    private static final String TAG = "VoiceActivityGate";
+    
+    private static final int BYTES_PER_MS = FramingController.BYTES_PER_MS;
+    static final int PRE_ROLL_MS = 300;
+    static final int HANGOVER_MS = 700;
+    static final int WARMUP_MS = 200;
+    private static final int MAX_PRE_ROLL_CHUNKS = 16; // 40ms帧时可容纳640ms
+    private static final long NANOS_PER_SAMPLE = TimeUnit.SECONDS.toNanos(1) / 16000;
+    
+    // 判定阈值（dBFS）
+    private static final double MIN_SPEECH_DBFS = -60; // 低于此能量一律视为静音
+    private static final double SPEECH_MARGIN_DB = 9; // 高于噪声底这么多即为语音
+    private static final double UNVOICED_MARGIN_DB = 4; // 清辅音能量较低，高于噪声底这么多且过零率高也算语音
+    private static final double UNVOICED_MIN_ZCR = 0.3;
+    private static final double INITIAL_NOISE_FLOOR_DBFS = -70;
+    // 噪声底每100ms音频的跟踪系数：能量低于噪声底时快速下降，静音帧缓慢上升，语音帧极慢上升（持续的大噪声最终也会被当作背景）
+    private static final double FLOOR_FALL_RATE = 0.5;
+    private static final double FLOOR_RISE_RATE = 0.05;
+    private static final double FLOOR_RISE_RATE_IN_SPEECH = 0.005;
+    
+    private static final Metrics.Counter PASSED_MS = Metrics.counter("audio.vadPassedMs");
+    private static final Metrics.Counter GATED_MS = Metrics.counter("audio.vadGatedMs");
+    private static final Metrics.Counter SPEECH_SEGMENTS = Metrics.counter("audio.vadSpeechSegments");
+    
+    private final AudioRecorder.AudioListener downstream;
+    private volatile boolean enabled = true;
+    
+    // 以下在录音线程和reset()中访问，均持有本对象的锁
+    private final AudioChunk[] preRoll = new AudioChunk[MAX_PRE_ROLL_CHUNKS];
+    private int preRollStart = 0;
+    private int preRollCount = 0;
+    private int preRollMs = 0;
+    private boolean active = false; // 正在发送
+    private int hangoverRemainingMs = 0;
+    private double noiseFloorDbfs = INITIAL_NOISE_FLOOR_DBFS;
+    private int warmupRemainingMs = WARMUP_MS; // reset()不重置，与噪声底一样跨录音保留
+    private int speechSegments = 0;
+    
+    public VoiceActivityGate(AudioRecorder.AudioListener downstream) {
+        this.downstream = downstream;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * 关闭后所有音频直接发送，预录缓冲区在下一帧补发
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        Log.d(TAG, "本地语音活动检测: " + (enabled ? "开启" : "关闭"));
+    }
+    
+    /**
+     * 释放预录缓冲区中的音频块并回到静音状态，噪声底保留
+     */
+    public synchronized void reset() {
+        while (preRollCount > 0) {
+            dropOldestPreRoll();
+        }
+        preRollStart = 0;
+        preRollMs = 0;
+        active = false;
+        hangoverRemainingMs = 0;
+    }
+    
+    @Override
+    public synchronized void onAudioData(AudioChunk chunk) {
+        int frameMs = chunk.length() / BYTES_PER_MS;
+        if (!enabled) {
+            flushPreRoll(chunk);
+            PASSED_MS.add(frameMs);
+            downstream.onAudioData(chunk);
+            return;
+        }
+        
+        boolean speech = isSpeech(chunk, frameMs);
+        if (speech) {
+            hangoverRemainingMs = HANGOVER_MS;
+            if (!active) {
+                active = true;
+                speechSegments++;
+                SPEECH_SEGMENTS.increment();
+                flushPreRoll(chunk);
+            }
+        } else if (active) {
+            hangoverRemainingMs -= frameMs;
+            active = hangoverRemainingMs > 0;
+        }
+        
+        if (active || speech) {
+            PASSED_MS.add(frameMs);
+            downstream.onAudioData(chunk);
+        } else {
+            pushPreRoll(chunk, frameMs);
+        }
+    }
+    
+    /**
+     * 计算能量和过零率并更新噪声底
+     */
+    private boolean isSpeech(AudioChunk chunk, int frameMs) {
+        int samples = chunk.length() / 2;
+        if (samples < 2) {
+            return active;
+        }
+        double sumSquares = 0;
+        int crossings = 0;
+        int previous = chunk.sample(0);
+        for (int i = 0; i < samples; i++) {
+            int sample = chunk.sample(i);
+            sumSquares += (double) sample * sample;
+            if ((sample ^ previous) < 0) {
+                crossings++;
+            }
+            previous = sample;
+        }
+        // 加一个极小值避免全零时取对数得到负无穷
+        double energy = 10 * Math.log10(sumSquares / samples / (32768.0 * 32768.0) + 1e-12);
+        double zcr = (double) crossings / (samples - 1);
+        
+        if (warmupRemainingMs > 0) {
+            // 向当前能量快速收敛，此时的帧一律按静音处理
+            warmupRemainingMs -= frameMs;
+            noiseFloorDbfs += Math.min(1.0, FLOOR_FALL_RATE * frameMs / 100.0) * (energy - noiseFloorDbfs);
+            return false;
+        }
+        
+        boolean speech = energy > MIN_SPEECH_DBFS
+                && (energy > noiseFloorDbfs + SPEECH_MARGIN_DB
+                    || (energy > noiseFloorDbfs + UNVOICED_MARGIN_DB && zcr > UNVOICED_MIN_ZCR));
+        
+        double rate = energy < noiseFloorDbfs ? FLOOR_FALL_RATE : speech ? FLOOR_RISE_RATE_IN_SPEECH : FLOOR_RISE_RATE;
+        noiseFloorDbfs += Math.min(1.0, rate * frameMs / 100.0) * (energy - noiseFloorDbfs);
+        return speech;
+    }
+    
+    /**
+     * 静音帧放入预录缓冲区，超出PRE_ROLL_MS的最旧帧释放，这些帧才算真正被拦截
+     */
+    private void pushPreRoll(AudioChunk chunk, int frameMs) {
+        if (preRollCount == MAX_PRE_ROLL_CHUNKS) {
+            dropOldestPreRoll();
+        }
+        preRoll[(preRollStart + preRollCount) % MAX_PRE_ROLL_CHUNKS] = chunk;
+        preRollCount++;
+        preRollMs += frameMs;
+        while (preRollCount > 1 && preRollMs - preRoll[preRollStart].length() / BYTES_PER_MS >= PRE_ROLL_MS) {
+            dropOldestPreRoll();
+        }
+    }
+    
+    private void dropOldestPreRoll() {
+        AudioChunk oldest = preRoll[preRollStart];
+        preRoll[preRollStart] = null;
+        preRollStart = (preRollStart + 1) % MAX_PRE_ROLL_CHUNKS;
+        preRollCount--;
+        preRollMs -= oldest.length() / BYTES_PER_MS;
+        GATED_MS.add(oldest.length() / BYTES_PER_MS);
+        oldest.release();
+    }
+    
+    /**
+     * 按顺序补发预录缓冲区；上次录音遗留的、与当前帧不连续的旧音频直接释放
+     */
+    private void flushPreRoll(AudioChunk current) {
+        // 预录缓冲区最多比PRE_ROLL_MS多一帧，再加上当前帧的时长
+        long oldestAllowed = current.captureNanos()
+                - TimeUnit.MILLISECONDS.toNanos(PRE_ROLL_MS + 2 * FramingController.MAX_FRAME_MS);
+        while (preRollCount > 0) {
+            AudioChunk chunk = preRoll[preRollStart];
+            preRoll[preRollStart] = null;
+            preRollStart = (preRollStart + 1) % MAX_PRE_ROLL_CHUNKS;
+            preRollCount--;
+            int frameMs = chunk.length() / BYTES_PER_MS;
+            if (chunk.captureNanos() < oldestAllowed) {
+                GATED_MS.add(frameMs);
+                chunk.release();
+                continue;
+            }
+            PASSED_MS.add(frameMs);
+            downstream.onAudioData(chunk);
+        }
+        preRollMs = 0;
+    }
+    
+    /**
+     * 门控效果评估（仓库没有录音样本，默认使用合成的测试音频）：
+     * 背景噪声中穿插若干句"语音"（基频谐波叠加音节包络，句首带一段清辅音噪声），
+     * 统计静音被拦截的比例、语音被漏掉的时长、句首是否被截断以及每帧CPU耗时。
+     * 传入pcmFile（16kHz 16位单声道小端原始PCM）时改为在真实录音上运行，只统计拦截比例和语音段数
+     */
+    public static Map<String, Object> evaluate(File pcmFile, int frameMs) throws IOException {
+        short[] pcm;
+        boolean[] speechLabels = null;
+        List<Integer> onsets = new ArrayList<>();
+        if (pcmFile != null) {
+            pcm = readPcm(pcmFile);
+        } else {
+            int[][] layout = {
+                    // {静音ms, 语音ms}
+                    {2000, 1500}, {3000, 800}, {600, 2200}, {5000, 1200}, {1500, 400}, {4000, 0}
+            };
+            int total = 0;
+            for (int[] segment : layout) {
+                total += segment[0] + segment[1];
+            }
+            pcm = new short[total * 16];
+            speechLabels = new boolean[pcm.length];
+            synthesize(layout, pcm, speechLabels, onsets);
+        }
+        
+        int frameBytes = Math.max(2, frameMs * BYTES_PER_MS);
+        AudioChunkPool pool = new AudioChunkPool(frameBytes, MAX_PRE_ROLL_CHUNKS + 4, MAX_PRE_ROLL_CHUNKS * 2);
+        boolean[] sent = new boolean[pcm.length];
+        long[] sentSamples = {0};
+        VoiceActivityGate gate = new VoiceActivityGate(chunk -> {
+            int end = (int) (chunk.captureNanos() / NANOS_PER_SAMPLE);
+            for (int i = end - chunk.length() / 2; i < end; i++) {
+                sent[i] = true;
+            }
+            sentSamples[0] += chunk.length() / 2;
+            chunk.release();
+        });
+        
+        int frameSamples = frameBytes / 2;
+        int frames = 0;
+        long startCpu = Debug.threadCpuTimeNanos();
+        for (int offset = 0; offset + frameSamples <= pcm.length; offset += frameSamples) {
+            AudioChunk chunk = pool.acquire();
+            for (int i = 0; i < frameSamples; i++) {
+                chunk.buffer().putShort(i * 2, pcm[offset + i]);
+            }
+            // 以测试音频中的位置作为采集时间，预录缓冲区的连续性检查按音频时间进行
+            chunk.setFilled(frameBytes, (offset + frameSamples) * NANOS_PER_SAMPLE);
+            gate.onAudioData(chunk);
+            frames++;
+        }
+        long cpuNanos = Debug.threadCpuTimeNanos() - startCpu;
+        
+        Map<String, Object> report = new HashMap<>();
+        report.put("frameMs", frameMs);
+        report.put("frames", frames);
+        report.put("cpuUsPerFrame", frames > 0 ? cpuNanos / 1e3 / frames : 0.0);
+        report.put("sentRatio", pcm.length > 0 ? (double) sentSamples[0] / pcm.length : 0.0);
+        report.put("speechSegments", gate.speechSegments);
+        report.put("finalNoiseFloorDbfs", gate.noiseFloorDbfs);
+        if (speechLabels != null) {
+            long silence = 0;
+            long silenceGated = 0;
+            long speech = 0;
+            long speechMissed = 0;
+            for (int i = 0; i < pcm.length; i++) {
+                if (speechLabels[i]) {
+                    speech++;
+                    if (!sent[i]) {
+                        speechMissed++;
+                    }
+                } else {
+                    silence++;
+                    if (!sent[i]) {
+                        silenceGated++;
+                    }
+                }
+            }
+            int clippedOnsets = 0;
+            for (int onset : onsets) {
+                if (!sent[onset]) {
+                    clippedOnsets++;
+                }
+            }
+            report.put("utterances", onsets.size());
+            report.put("clippedOnsets", clippedOnsets);
+            report.put("speechMissedMs", speechMissed / 16.0);
+            report.put("silenceGatedRatio", silence > 0 ? (double) silenceGated / silence : 0.0);
+            report.put("speechMs", speech / 16.0);
+        }
+        Log.d(TAG, "语音活动检测评估: " + report);
+        return report;
+    }
+    
+    /**
+     * 按布局生成测试音频：背景噪声约-62dBFS，语音段为120~220Hz基频的谐波叠加4Hz音节包络，句首80ms为清辅音噪声
+     */
+    private static void synthesize(int[][] layout, short[] pcm, boolean[] speechLabels, List<Integer> onsets) {
+        Random random = new Random(20251017);
+        int pos = 0;
+        for (int[] segment : layout) {
+            int silenceEnd = pos + segment[0] * 16;
+            for (; pos < silenceEnd; pos++) {
+                pcm[pos] = (short) (random.nextGaussian() * 25);
+            }
+            int speechSamples = segment[1] * 16;
+            if (speechSamples == 0) {
+                continue;
+            }
+            onsets.add(pos);
+            int unvoiced = Math.min(speechSamples, 80 * 16);
+            double pitch = 120 + random.nextInt(100);
+            double phase = 0;
+            for (int i = 0; i < speechSamples; i++, pos++) {
+                double value;
+                if (i < unvoiced) {
+                    // 清辅音：能量不高、过零率高的宽带噪声
+                    value = random.nextGaussian() * 60;
+                } else {
+                    double t = (double) i / 16000;
+                    double envelope = 0.35 + 0.65 * Math.abs(Math.sin(Math.PI * 4 * t));
+                    phase += 2 * Math.PI * pitch * (1 + 0.05 * Math.sin(2 * Math.PI * 1.5 * t)) / 16000;
+                    value = envelope * 2500 * (Math.sin(phase) + 0.5 * Math.sin(2 * phase) + 0.25 * Math.sin(3 * phase))
+                            + random.nextGaussian() * 25;
+                }
+                pcm[pos] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+                speechLabels[pos] = true;
+            }
+        }
+    }
+    
+    /**
+     * 读取16kHz 16位单声道小端原始PCM
+     */
+    static short[] readPcm(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length() & ~1];
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+            int read = 0;
+            while (read < bytes.length) {
+                int n = input.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+        }
+        short[] pcm = new short[bytes.length / 2];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) ((bytes[i * 2] & 0xFF) | bytes[i * 2 + 1] << 8);
+        }
+        return pcm;
+    }
+}
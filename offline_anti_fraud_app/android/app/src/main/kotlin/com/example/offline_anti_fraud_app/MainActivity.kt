@@ -40,11 +40,12 @@ class MainActivity: FlutterActivity() {
     override fun configureFlutterEngine(flutterEngine: FlutterEngine) {
         super.configureFlutterEngine(flutterEngine)
         
-        // 初始化ASR Flutter通道
-        asrFlutterChannel = AsrFlutterChannel(flutterEngine)
-        
         // 初始化反诈模型Flutter通道
-        fraudDetectionFlutterChannel = FraudDetectionFlutterChannel(flutterEngine, this)
+        val fraudChannel = FraudDetectionFlutterChannel(flutterEngine, this)
+        fraudDetectionFlutterChannel = fraudChannel
+        
+        // 初始化ASR Flutter通道，识别完成的句子直接交给反诈模型打分
+        asrFlutterChannel = AsrFlutterChannel(flutterEngine, this, fraudChannel.fraudDetectionService)
         
         // 初始化腾讯定位Flutter通道
         tencentLocationFlutterChannel = TencentLocationFlutterChannel(flutterEngine, this)
@@ -0,0 +1,231 @@
+package com.example.offline_anti_fraud_app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 语音活动检测门控测试
+ * 在resources/vad下的录音样本上运行门控，按标注的语音区间检查语音/静音判定以及预录、拖尾时长；
+ * 每个样本是一对同名的.pcm（16kHz 16位单声道小端原始PCM）和.labels（每行“开始ms<TAB>结束ms”）文件，放入新的录音即自动参与测试
+ */
+public class VoiceActivityGateTest {
+    private static final int[] FRAME_MS = {20, 40};
+    private static final int SAMPLES_PER_MS = 16;
+    private static final long NANOS_PER_SAMPLE = TimeUnit.SECONDS.toNanos(1) / 16000;
+    // 标注边界和按帧判定带来的误差
+    private static final int TOLERANCE_MS = 100;
+    
+    @Test
+    public void keepsLabeledSpeech() throws IOException {
+        for (Fixture fixture : loadFixtures()) {
+            for (int frameMs : FRAME_MS) {
+                boolean[] sent = run(fixture, frameMs);
+                long speech = 0;
+                long missed = 0;
+                for (int[] interval : fixture.speech) {
+                    for (int i = toSample(interval[0]); i < toSample(interval[1]); i++) {
+                        speech++;
+                        if (!sent[i]) {
+                            missed++;
+                        }
+                    }
+                }
+                assertTrue(fixture.name + "@" + frameMs + "ms 漏掉语音" + missed / SAMPLES_PER_MS + "ms",
+                        missed <= speech / 20);
+            }
+        }
+    }
+    
+    @Test
+    public void gatesSilenceAwayFromSpeech() throws IOException {
+        for (Fixture fixture : loadFixtures()) {
+            for (int frameMs : FRAME_MS) {
+                boolean[] sent = run(fixture, frameMs);
+                boolean[] nearSpeech = new boolean[sent.length];
+                for (int[] interval : fixture.speech) {
+                    int from = Math.max(0, toSample(interval[0] - VoiceActivityGate.PRE_ROLL_MS - TOLERANCE_MS));
+                    int to = Math.min(sent.length, toSample(interval[1] + VoiceActivityGate.HANGOVER_MS + TOLERANCE_MS));
+                    Arrays.fill(nearSpeech, from, to, true);
+                }
+                long silence = 0;
+                long leaked = 0;
+                for (int i = 0; i < sent.length; i++) {
+                    if (!nearSpeech[i]) {
+                        silence++;
+                        if (sent[i]) {
+                            leaked++;
+                        }
+                    }
+                }
+                assertTrue(fixture.name + "没有远离语音的静音", silence > 0);
+                assertTrue(fixture.name + "@" + frameMs + "ms 静音发送了" + leaked / SAMPLES_PER_MS + "ms",
+                        leaked <= silence / 20);
+            }
+        }
+    }
+    
+    @Test
+    public void sendsPreRollBeforeEachOnset() throws IOException {
+        for (Fixture fixture : loadFixtures()) {
+            for (int frameMs : FRAME_MS) {
+                boolean[] sent = run(fixture, frameMs);
+                int previousEnd = Integer.MIN_VALUE / 2;
+                for (int[] interval : fixture.speech) {
+                    String where = fixture.name + "@" + frameMs + "ms 语音" + interval[0] + "ms";
+                    assertTrue(where + " 句首被截断", sent[toSample(interval[0])]);
+                    // 门控处于静音状态时才检查预录：前一句的拖尾已结束，且预录缓冲区已经填满
+                    if (interval[0] - previousEnd >= VoiceActivityGate.HANGOVER_MS + VoiceActivityGate.PRE_ROLL_MS + TOLERANCE_MS) {
+                        int from = toSample(interval[0] - VoiceActivityGate.PRE_ROLL_MS + TOLERANCE_MS);
+                        for (int i = from; i < toSample(interval[0]); i++) {
+                            assertTrue(where + " 预录不足，" + (toSample(interval[0]) - i) / SAMPLES_PER_MS + "ms前未发送", sent[i]);
+                        }
+                    }
+                    previousEnd = interval[1];
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void holdsHangoverAfterSpeech() throws IOException {
+        for (Fixture fixture : loadFixtures()) {
+            for (int frameMs : FRAME_MS) {
+                boolean[] sent = run(fixture, frameMs);
+                for (int k = 0; k < fixture.speech.size(); k++) {
+                    int end = fixture.speech.get(k)[1];
+                    int nextStart = k + 1 < fixture.speech.size() ? fixture.speech.get(k + 1)[0] : Integer.MAX_VALUE / 2;
+                    String where = fixture.name + "@" + frameMs + "ms 语音" + end + "ms结束";
+                    int hangoverEnd = Math.min(fixture.durationMs(), end + VoiceActivityGate.HANGOVER_MS - TOLERANCE_MS);
+                    for (int i = toSample(end); i < toSample(hangoverEnd); i++) {
+                        assertTrue(where + " 拖尾过短，" + (i - toSample(end)) / SAMPLES_PER_MS + "ms后未发送", sent[i]);
+                    }
+                    // 拖尾结束后重新拦截（下一句的预录开始之前）
+                    int stop = end + VoiceActivityGate.HANGOVER_MS + TOLERANCE_MS;
+                    if (stop < fixture.durationMs() && stop < nextStart - VoiceActivityGate.PRE_ROLL_MS - TOLERANCE_MS) {
+                        assertFalse(where + " 拖尾过长", sent[toSample(stop)]);
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void countsSpeechSegments() throws IOException {
+        for (Fixture fixture : loadFixtures()) {
+            // 间隔短于拖尾的两句话属于同一段，发送出去的连续音频即为一段
+            int expected = 0;
+            int previousEnd = Integer.MIN_VALUE / 2;
+            for (int[] interval : fixture.speech) {
+                if (interval[0] - previousEnd > VoiceActivityGate.HANGOVER_MS) {
+                    expected++;
+                }
+                previousEnd = interval[1];
+            }
+            for (int frameMs : FRAME_MS) {
+                boolean[] sent = run(fixture, frameMs);
+                int segments = 0;
+                for (int i = 0; i < sent.length; i++) {
+                    if (sent[i] && (i == 0 || !sent[i - 1])) {
+                        segments++;
+                    }
+                }
+                assertEquals(fixture.name + "@" + frameMs + "ms 语音段数", expected, segments);
+            }
+        }
+    }
+    
+    /**
+     * 按录音线程的方式分帧送入门控，返回每个采样点是否被发送
+     */
+    private static boolean[] run(Fixture fixture, int frameMs) {
+        short[] pcm = fixture.pcm;
+        boolean[] sent = new boolean[pcm.length];
+        VoiceActivityGate gate = new VoiceActivityGate(chunk -> {
+            int end = (int) (chunk.captureNanos() / NANOS_PER_SAMPLE);
+            Arrays.fill(sent, end - chunk.length() / 2, end, true);
+            chunk.release();
+        });
+        
+        int frameSamples = frameMs * SAMPLES_PER_MS;
+        AudioChunkPool pool = new AudioChunkPool(frameSamples * 2, 4, 64);
+        for (int offset = 0; offset + frameSamples <= pcm.length; offset += frameSamples) {
+            AudioChunk chunk = pool.acquire();
+            for (int i = 0; i < frameSamples; i++) {
+                chunk.buffer().putShort(i * 2, pcm[offset + i]);
+            }
+            chunk.setFilled(frameSamples * 2, (offset + frameSamples) * NANOS_PER_SAMPLE);
+            gate.onAudioData(chunk);
+        }
+        gate.reset();
+        return sent;
+    }
+    
+    private static int toSample(int ms) {
+        return ms * SAMPLES_PER_MS;
+    }
+    
+    private static List<Fixture> loadFixtures() throws IOException {
+        URL url = VoiceActivityGateTest.class.getClassLoader().getResource("vad");
+        assertTrue("缺少resources/vad", url != null);
+        File dir;
+        try {
+            dir = new File(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".pcm"));
+        assertTrue("resources/vad下没有录音样本", files != null && files.length > 0);
+        Arrays.sort(files);
+        List<Fixture> fixtures = new ArrayList<>();
+        for (File pcmFile : files) {
+            String name = pcmFile.getName().substring(0, pcmFile.getName().length() - ".pcm".length());
+            File labelsFile = new File(dir, name + ".labels");
+            assertTrue(name + "缺少标注文件", labelsFile.isFile());
+            fixtures.add(new Fixture(name, VoiceActivityGate.readPcm(pcmFile), readLabels(labelsFile)));
+        }
+        return fixtures;
+    }
+    
+    private static List<int[]> readLabels(File file) throws IOException {
+        List<int[]> intervals = new ArrayList<>();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            intervals.add(new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])});
+        }
+        return intervals;
+    }
+    
+    private static class Fixture {
+        final String name;
+        final short[] pcm;
+        final List<int[]> speech; // 按时间排序的语音区间（ms）
+        
+        Fixture(String name, short[] pcm, List<int[]> speech) {
+            this.name = name;
+            this.pcm = pcm;
+            this.speech = speech;
+        }
+        
+        int durationMs() {
+            return pcm.length / SAMPLES_PER_MS;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+"""生成speech_in_noise_synthetic.pcm及其标注（16kHz 16位单声道小端原始PCM）
+
+仓库里没有真机录音，这个样本用声门脉冲串经共振峰滤波合成元音，句首加擦音，
+背景为逐渐变响的低频噪声，包含一句低音量的话和一个短于拖尾时长的句间停顿。
+随机种子固定，重新运行得到的文件逐字节相同。
+"""
+import math
+import random
+import struct
+
+RATE = 16000
+NAME = "speech_in_noise_synthetic"
+
+# (开始ms, 结束ms, 相对音量dB)
+UTTERANCES = [(1500, 3300, 0), (5000, 6000, -12), (6400, 7600, -3)]
+TOTAL_MS = 10000
+VOWELS = [(730, 1090, 2440), (270, 2290, 3010), (300, 870, 2240), (530, 1840, 2480), (570, 840, 2410)]
+
+
+class Resonator:
+    """二阶共振峰滤波器"""
+
+    def __init__(self, freq, bandwidth):
+        r = math.exp(-math.pi * bandwidth / RATE)
+        self.a1 = 2 * r * math.cos(2 * math.pi * freq / RATE)
+        self.a2 = -r * r
+        self.gain = 1 - r
+        self.y1 = 0.0
+        self.y2 = 0.0
+
+    def process(self, x):
+        y = self.gain * x + self.a1 * self.y1 + self.a2 * self.y2
+        self.y2, self.y1 = self.y1, y
+        return y
+
+
+def main():
+    rng = random.Random(20251017)
+    samples = [0.0] * (TOTAL_MS * RATE // 1000)
+
+    # 背景：低通噪声（空调、车内），前5秒约-58dBFS，之后在3秒内升高4dB
+    low = 0.0
+    for i in range(len(samples)):
+        t = i / RATE
+        level = 40 * 10 ** (min(max(t - 3.3, 0.0), 3.0) / 3.0 * 4 / 20)
+        low = 0.97 * low + 0.03 * rng.gauss(0, 1)
+        samples[i] = level * (low * 4 + 0.3 * rng.gauss(0, 1))
+
+    for start_ms, end_ms, gain_db in UTTERANCES:
+        gain = 10 ** (gain_db / 20)
+        start = start_ms * RATE // 1000
+        end = end_ms * RATE // 1000
+        # 句首90ms擦音：高通宽带噪声
+        fricative = start + 90 * RATE // 1000
+        prev = 0.0
+        for i in range(start, fricative):
+            x = rng.gauss(0, 1)
+            samples[i] += gain * 900 * (x - prev)
+            prev = x
+        # 元音：每个音节约180ms，基频110~180Hz缓慢变化
+        pitch = 110 + rng.random() * 70
+        phase = 0.0
+        syllable_len = 180 * RATE // 1000
+        formants = None
+        for i in range(fricative, end):
+            k = (i - fricative) % syllable_len
+            if k == 0:
+                f1, f2, f3 = VOWELS[rng.randrange(len(VOWELS))]
+                formants = [Resonator(f1, 90), Resonator(f2, 110), Resonator(f3, 170)]
+            t = (i - start) / RATE
+            phase += (pitch * (1 + 0.08 * math.sin(2 * math.pi * 0.7 * t))) / RATE
+            pulse = 1.0 if phase >= 1 else 0.0
+            phase -= math.floor(phase)
+            envelope = math.sin(math.pi * k / syllable_len) ** 0.6
+            x = sum(r.process(pulse) for r in formants)
+            samples[i] += gain * envelope * 60000 * x
+
+    with open(NAME + ".pcm", "wb") as f:
+        f.write(b"".join(struct.pack("<h", max(-32768, min(32767, int(round(s))))) for s in samples))
+    with open(NAME + ".labels", "w", encoding="utf-8") as f:
+        f.write("# 语音区间（ms），每行“开始<TAB>结束”\n")
+        for start_ms, end_ms, _ in UTTERANCES:
+            f.write("%d\t%d\n" % (start_ms, end_ms))
+
+
+if __name__ == "__main__":
+    main()
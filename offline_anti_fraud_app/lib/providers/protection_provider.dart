@@ -297,7 +297,7 @@ class ProtectionProvider extends ChangeNotifier {
         debugPrint('双重检测都为诈骗！已显示警告弹窗');
         
         // 外部模型检测到诈骗，清空历史上下文
-        _clearDetectionState();
+        await _clearDetectionState();
       } else {
         // 外部检测未检测到诈骗，不显示弹窗
         debugPrint('外部检测未检测到诈骗，不显示警告弹窗');
@@ -313,13 +313,13 @@ class ProtectionProvider extends ChangeNotifier {
       debugPrint('外部检测服务调用失败，默认相信本地模型结果，已显示警告弹窗');
       
       // 外部模型调用失败，清空历史上下文
-      _clearDetectionState();
+      await _clearDetectionState();
     }
   }
   
   /// 清空检测状态和历史上下文
-  void _clearDetectionState() {
-    _voiceService.clearAccumulatedText();
+  Future<void> _clearDetectionState() async {
+    await _voiceService.clearAccumulatedText();
     _lastDetectedSentence = '';
     _accumulatedText = '';
     _lastFraudResult = false;
@@ -463,8 +463,8 @@ class ProtectionProvider extends ChangeNotifier {
   }
 
   // 清空累积文本
-  void clearAccumulatedText() {
-    _voiceService.clearAccumulatedText();
+  Future<void> clearAccumulatedText() async {
+    await _voiceService.clearAccumulatedText();
     _lastDetectedSentence = '';
     _accumulatedText = '';
     _lastFraudResult = false;
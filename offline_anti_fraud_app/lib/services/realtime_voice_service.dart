@@ -25,16 +25,24 @@ class RealtimeVoiceService {
   // 语音识别状态
   bool _isListening = false;
   
+  // 原生流式检测会话ID，只对新句子分词，为空时退回整段文本predict
+  int? _fraudStreamId;
+  
   // MethodChannel用于与原生Android通信
   static const MethodChannel _channel = MethodChannel('com.example.offline_anti_fraud_app/asr');
   static const MethodChannel _fraudDetectionChannel = MethodChannel(
       'com.example.offline_anti_fraud_app/fraud_detection');
+  // 原生侧在每句识别完成后直接打分并推送风险分数，订阅期间不再定时轮询predict
+  static const EventChannel _riskScoreChannel = EventChannel(
+      'com.example.offline_anti_fraud_app/risk_scores');
+  StreamSubscription<dynamic>? _riskScoreSubscription;
   
   // 监听器回调
   Function(String)? onSentenceDetected;
   Function(String)? onStatusChanged;
   Function(bool, String)? onFraudDetected; // 添加诈骗检测结果回调
   Function()? onApiKeyError; // 添加API密钥错误回调
+  Function(List<Map<String, dynamic>>)? onScamPhrasesMatched; // 转写文本命中诈骗话术短语回调
   
   // 定时器相关
   Timer? _detectionTimer;
@@ -67,6 +75,9 @@ class RealtimeVoiceService {
       // 设置MethodChannel监听器
       _setupChannelListeners();
       
+      // 订阅原生风险分数推送
+      await _subscribeRiskScores();
+      
       // 调用原生Android的ASR服务
       await _channel.invokeMethod('start');
       
@@ -93,6 +104,13 @@ class RealtimeVoiceService {
       // 取消定时器
       _cancelTimer();
       
+      // 取消风险分数订阅，原生侧随之关闭其流式会话
+      await _riskScoreSubscription?.cancel();
+      _riskScoreSubscription = null;
+      
+      // 关闭流式检测会话
+      await _closeFraudStream();
+      
       // 保存累积的文本到本地（可选）
       await _saveAccumulatedText();
       
@@ -129,6 +147,15 @@ class RealtimeVoiceService {
           // 调用API密钥错误回调
           onApiKeyError?.call();
           break;
+        case 'scamPhraseMatched':
+          // 原生短语匹配器在每段转写文本上命中的诈骗话术，与定时模型检测并行、即时推送
+          final event = Map<String, dynamic>.from(call.arguments as Map);
+          final matches = (event['matches'] as List)
+              .map((match) => Map<String, dynamic>.from(match as Map))
+              .toList();
+          debugPrint('命中诈骗话术短语: ${matches.map((m) => m['phrase']).join('、')}');
+          onScamPhrasesMatched?.call(matches);
+          break;
       }
     });
   }
@@ -147,14 +174,20 @@ class RealtimeVoiceService {
       _newAccumulatedText += ' ' + sentence;
     }
     
-    // 增加句子计数
-    _sentenceCount++;
-    debugPrint('当前句子计数: $_sentenceCount');
-    
     // 通知监听器检测到新句子
     onSentenceDetected?.call(sentence);
     _notifyStatusChanged('识别到: $sentence');
     
+    // 原生侧已在推送风险分数时，检测由原生侧按句触发
+    if (_riskScoreSubscription != null) return;
+    
+    // 将新句子追加到原生流式检测会话
+    await _appendToFraudStream(sentence);
+    
+    // 增加句子计数
+    _sentenceCount++;
+    debugPrint('当前句子计数: $_sentenceCount');
+    
     // 计算最终识别内容
     String finalDetectionText = accumulatedText;
     
@@ -205,6 +238,53 @@ class RealtimeVoiceService {
     }
   }
 
+  /// 订阅原生风险分数推送，原生侧没有推送通道时退回定时轮询检测
+  Future<void> _subscribeRiskScores() async {
+    await _riskScoreSubscription?.cancel();
+    _riskScoreSubscription = null;
+    
+    // EventChannel订阅不会报告通道缺失，先通过MethodChannel确认原生侧支持风险分数推送
+    try {
+      await _channel.invokeMethod('getRiskStreamStats');
+    } on MissingPluginException {
+      debugPrint('原生侧不支持风险分数推送，使用定时轮询检测');
+      return;
+    }
+    if (!_isListening) return;
+    
+    _riskScoreSubscription = _riskScoreChannel.receiveBroadcastStream().listen(
+      (dynamic event) => _onRiskScore(Map<dynamic, dynamic>.from(event as Map)),
+      onError: (dynamic error) {
+        // 模型未初始化等错误只影响本次打分，订阅保持
+        debugPrint('风险分数推送错误: $error');
+      },
+    );
+  }
+
+  /// 处理原生推送的风险分数
+  void _onRiskScore(Map<dynamic, dynamic> event) {
+    if (!_isListening) return;
+    
+    double fraudProb = (event['fraudProb'] as num).toDouble();
+    bool isFraud = event['predLabel'].toString() == '1' || fraudProb > 0.5;
+    String message = isFraud ? '检测到诈骗风险！' : '未检测到诈骗风险';
+    
+    final latency = Map<dynamic, dynamic>.from(event['latency'] as Map);
+    debugPrint('诈骗检测结果: $isFraud, 概率: $fraudProb, '
+        '语音结束到出分: ${(latency['audioToScoreMs'] as num).toStringAsFixed(0)}ms');
+    _notifyStatusChanged('检测完成: $message');
+    onFraudDetected?.call(isFraud, message);
+    
+    // 与定时检测一致：保留末尾一段作为旧历史对话，清空新累计对话
+    String finalDetectionText = accumulatedText;
+    if (finalDetectionText.length > _MAX_HISTORY_LENGTH) {
+      _oldHistoryText = finalDetectionText.substring(finalDetectionText.length - _MAX_HISTORY_LENGTH);
+    } else {
+      _oldHistoryText = finalDetectionText;
+    }
+    _newAccumulatedText = '';
+  }
+
   /// 调用本地反诈模型进行检测
   Future<void> _detectFraud() async {
     // 计算最终识别内容
@@ -214,10 +294,18 @@ class RealtimeVoiceService {
     try {
       _notifyStatusChanged('正在检测诈骗风险...');
       
-      // 调用原生反诈模型检测 - 方法名从detect改为predict
-      dynamic result = await _fraudDetectionChannel.invokeMethod('predict', {
-        'text': finalDetectionText
-      });
+      // 调用原生反诈模型检测：优先使用流式会话，避免重复分词历史文本
+      dynamic result;
+      if (_fraudStreamId != null) {
+        result = await _fraudDetectionChannel.invokeMethod('scoreStream', {
+          'streamId': _fraudStreamId
+        });
+      } else {
+        result = await _fraudDetectionChannel.invokeMethod('predict', {
+          'text': finalDetectionText,
+          'streamKey': 'realtime_voice' // 排队中的旧检测请求会被合并
+        });
+      }
       
       // 安全解析原生返回的结果，处理类型不匹配问题
       Map<dynamic, dynamic> resultMap = result as Map<dynamic, dynamic>;
@@ -262,14 +350,42 @@ class RealtimeVoiceService {
     }
   }
 
-  /// 清空累积的文本
-  void clearAccumulatedText() {
+  /// 将句子追加到原生流式检测会话，会话不存在时先打开
+  Future<void> _appendToFraudStream(String sentence) async {
+    try {
+      _fraudStreamId ??= await _fraudDetectionChannel.invokeMethod<int>('openStream');
+      await _fraudDetectionChannel.invokeMethod('appendToStream', {
+        'streamId': _fraudStreamId,
+        'sentence': sentence
+      });
+    } catch (e) {
+      // 追加失败后原生会话缺少这句话，关闭它并退回整段文本检测，下一句会重新打开会话
+      debugPrint('追加流式检测会话失败: $e');
+      await _closeFraudStream();
+    }
+  }
+
+  /// 关闭原生流式检测会话
+  Future<void> _closeFraudStream() async {
+    final streamId = _fraudStreamId;
+    if (streamId == null) return;
+    _fraudStreamId = null;
+    try {
+      await _fraudDetectionChannel.invokeMethod('closeStream', {'streamId': streamId});
+    } catch (e) {
+      debugPrint('关闭流式检测会话失败: $e');
+    }
+  }
+
+  /// 清空累积的文本，原生流式检测会话关闭后返回
+  Future<void> clearAccumulatedText() async {
     _oldHistoryText = '';
     _newAccumulatedText = '';
     _currentSentence = '';
     _sentenceCount = 0; // 重置句子计数
     _lastActivityTime = null;
     _cancelTimer();
+    await _closeFraudStream();
     _notifyStatusChanged('已清空累积文本');
   }
 